@@ -0,0 +1,474 @@
+package customer.capjdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams a {@link ResultSet} as a compact binary columnar format. Rows are
+ * buffered into primitive column vectors of at most {@code batchSize} rows, each
+ * batch is written and the vectors are reused, so memory stays bounded by the
+ * batch size whatever the size of the result.
+ *
+ * <p>Layout, all numbers big-endian:
+ * <pre>
+ * stream    := magic "CJC1", int columnCount, column*, batch*, int 0
+ * column    := utf name (as DataOutput.writeUTF), byte type, byte scale
+ * batch     := int rowCount (&gt; 0), vector* (one per column, in schema order)
+ * vector    := validity, values
+ * validity  := ceil(rowCount / 8) bytes, bit (i % 8) of byte (i / 8) set when row i is not null
+ * values    := INT32: int[rowCount] | INT64, TIMESTAMP, DECIMAL: long[rowCount]
+ *            | FLOAT64: double[rowCount] | BOOLEAN: bitmap like validity
+ *            | STRING: byte mode, strings
+ *            | BINARY: int[rowCount] length, bytes
+ * strings   := mode 0, 1: int entryCount, (int length, utf-8 bytes)*, int[rowCount] index
+ *            | mode 2: int[rowCount] length, utf-8 bytes
+ * </pre>
+ * Null slots hold zero. TIMESTAMP is milliseconds since the epoch, DECIMAL is the
+ * unscaled value with the scale from the schema. STRING columns are dictionary
+ * encoded: each batch appends its new entries to the column dictionary (mode 1
+ * clears it first) and the values are indexes into that dictionary. A batch
+ * whose values are mostly new entries is written plain (mode 2) and leaves the
+ * dictionary unchanged, so near-unique columns are not kept in memory, and the
+ * dictionary is cleared once its strings exceed a million characters.
+ */
+public class ColumnarExportWriter {
+
+    public static final String CONTENT_TYPE = "application/x-capjdbc-columnar";
+
+    static final byte INT32 = 1;
+    static final byte INT64 = 2;
+    static final byte FLOAT64 = 3;
+    static final byte BOOLEAN = 4;
+    static final byte TIMESTAMP = 5;
+    static final byte DECIMAL = 6;
+    static final byte STRING = 7;
+    static final byte BINARY = 8;
+
+    static final byte DICTIONARY_APPEND = 0;
+    static final byte DICTIONARY_RESET = 1;
+    static final byte PLAIN = 2;
+
+    private static final byte[] MAGIC = { 'C', 'J', 'C', '1' };
+    private static final int MAX_DICTIONARY_CHARS = 1 << 20;
+
+    private final int batchSize;
+    private final int maxDictionaryChars;
+
+    public ColumnarExportWriter(int batchSize) {
+        this(batchSize, MAX_DICTIONARY_CHARS);
+    }
+
+    ColumnarExportWriter(int batchSize, int maxDictionaryChars) {
+        this.batchSize = batchSize;
+        this.maxDictionaryChars = maxDictionaryChars;
+    }
+
+    /**
+     * Writes the whole result set and returns the number of rows written.
+     */
+    public long write(ResultSet rs, OutputStream target) throws SQLException, IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 64 * 1024));
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+
+        List<ColumnVector> vectors = new ArrayList<>(columnCount);
+        out.write(MAGIC);
+        out.writeInt(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            ColumnVector vector = createVector(meta, i);
+            vectors.add(vector);
+            out.writeUTF(meta.getColumnLabel(i));
+            out.writeByte(vector.type);
+            out.writeByte(vector.scale);
+        }
+
+        // fixed-width values go out through one buffer per vector instead of a call per value
+        ByteBuffer buffer = ByteBuffer.allocate(batchSize * 8);
+        long total = 0;
+        int rows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                vectors.get(i).read(rs, i + 1, rows);
+            }
+            rows++;
+            if (rows == batchSize) {
+                writeBatch(out, vectors, rows, buffer);
+                total += rows;
+                rows = 0;
+            }
+        }
+        if (rows > 0) {
+            writeBatch(out, vectors, rows, buffer);
+            total += rows;
+        }
+        out.writeInt(0);
+        out.flush();
+        return total;
+    }
+
+    private void writeBatch(DataOutputStream out, List<ColumnVector> vectors, int rows, ByteBuffer buffer)
+            throws IOException {
+        out.writeInt(rows);
+        for (ColumnVector vector : vectors) {
+            out.write(vector.validity, 0, (rows + 7) >>> 3);
+            buffer.clear();
+            vector.writeValues(out, rows, buffer);
+            vector.clear(rows);
+        }
+        // let the client start decoding while the next batch is read from the database
+        out.flush();
+    }
+
+    private ColumnVector createVector(ResultSetMetaData meta, int column) throws SQLException {
+        switch (meta.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return new IntVector(batchSize);
+            case Types.BIGINT:
+                return new LongVector(INT64, batchSize);
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleVector(batchSize);
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return new BooleanVector(batchSize);
+            case Types.DATE:
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return new LongVector(TIMESTAMP, batchSize);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                if (meta.getPrecision(column) <= 18 && meta.getScale(column) >= 0) {
+                    return new DecimalVector(batchSize, meta.getScale(column));
+                }
+                return new StringVector(batchSize, maxDictionaryChars);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return new BinaryVector(batchSize);
+            default:
+                return new StringVector(batchSize, maxDictionaryChars);
+        }
+    }
+
+    private abstract static class ColumnVector {
+        final byte type;
+        final byte scale;
+        final byte[] validity;
+
+        ColumnVector(byte type, int scale, int capacity) {
+            this.type = type;
+            this.scale = (byte) scale;
+            this.validity = new byte[(capacity + 7) >>> 3];
+        }
+
+        void setValid(int row) {
+            validity[row >>> 3] |= 1 << (row & 7);
+        }
+
+        boolean isValid(int row) {
+            return (validity[row >>> 3] & (1 << (row & 7))) != 0;
+        }
+
+        void clear(int rows) {
+            Arrays.fill(validity, 0, (rows + 7) >>> 3, (byte) 0);
+        }
+
+        abstract void read(ResultSet rs, int column, int row) throws SQLException;
+
+        /**
+         * Writes the values of the batch; the buffer is empty and holds eight bytes per row.
+         */
+        abstract void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException;
+
+        static void flush(DataOutputStream out, ByteBuffer buffer) throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    private static final class IntVector extends ColumnVector {
+        private final int[] values;
+
+        IntVector(int capacity) {
+            super(INT32, 0, capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            values[row] = rs.getInt(column);
+            if (!rs.wasNull()) {
+                setValid(row);
+            }
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            for (int i = 0; i < rows; i++) {
+                buffer.putInt(values[i]);
+            }
+            flush(out, buffer);
+        }
+    }
+
+    private static class LongVector extends ColumnVector {
+        final long[] values;
+
+        LongVector(byte type, int capacity) {
+            this(type, 0, capacity);
+        }
+
+        LongVector(byte type, int scale, int capacity) {
+            super(type, scale, capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            if (type == TIMESTAMP) {
+                Timestamp value = rs.getTimestamp(column);
+                values[row] = value != null ? value.getTime() : 0L;
+            } else {
+                values[row] = rs.getLong(column);
+            }
+            if (!rs.wasNull()) {
+                setValid(row);
+            }
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            for (int i = 0; i < rows; i++) {
+                buffer.putLong(values[i]);
+            }
+            flush(out, buffer);
+        }
+    }
+
+    private static final class DecimalVector extends LongVector {
+
+        DecimalVector(int capacity, int scale) {
+            super(DECIMAL, scale, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            BigDecimal value = rs.getBigDecimal(column);
+            if (value != null) {
+                values[row] = value.setScale(scale).unscaledValue().longValue();
+                setValid(row);
+            } else {
+                values[row] = 0L;
+            }
+        }
+    }
+
+    private static final class DoubleVector extends ColumnVector {
+        private final double[] values;
+
+        DoubleVector(int capacity) {
+            super(FLOAT64, 0, capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            values[row] = rs.getDouble(column);
+            if (!rs.wasNull()) {
+                setValid(row);
+            }
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            for (int i = 0; i < rows; i++) {
+                buffer.putDouble(values[i]);
+            }
+            flush(out, buffer);
+        }
+    }
+
+    private static final class BooleanVector extends ColumnVector {
+        private final byte[] values;
+
+        BooleanVector(int capacity) {
+            super(BOOLEAN, 0, capacity);
+            values = new byte[(capacity + 7) >>> 3];
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            boolean value = rs.getBoolean(column);
+            if (!rs.wasNull()) {
+                setValid(row);
+                if (value) {
+                    values[row >>> 3] |= 1 << (row & 7);
+                }
+            }
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            out.write(values, 0, (rows + 7) >>> 3);
+        }
+
+        @Override
+        void clear(int rows) {
+            super.clear(rows);
+            Arrays.fill(values, 0, (rows + 7) >>> 3, (byte) 0);
+        }
+    }
+
+    private static final class StringVector extends ColumnVector {
+        private final int[] indexes;
+        private final byte[][] encoded;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+        private final int maxDictionaryChars;
+        private int dictionaryChars;
+        /** Index of the first entry added by the current batch. */
+        private int batchStart;
+        private int present;
+        private boolean reset;
+
+        StringVector(int capacity, int maxDictionaryChars) {
+            super(STRING, 0, capacity);
+            indexes = new int[capacity];
+            encoded = new byte[capacity][];
+            this.maxDictionaryChars = maxDictionaryChars;
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            String value = rs.getString(column);
+            if (value == null) {
+                indexes[row] = 0;
+                return;
+            }
+            setValid(row);
+            present++;
+            Integer index = dictionary.get(value);
+            if (index == null) {
+                index = entries.size();
+                dictionary.put(value, index);
+                entries.add(value);
+                dictionaryChars += value.length();
+            }
+            indexes[row] = index;
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            int added = entries.size() - batchStart;
+            if (added * 4 > present * 3) {
+                writePlain(out, rows, buffer);
+                return;
+            }
+            out.writeByte(reset ? DICTIONARY_RESET : DICTIONARY_APPEND);
+            out.writeInt(added);
+            for (int i = batchStart; i < entries.size(); i++) {
+                byte[] bytes = entries.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (int i = 0; i < rows; i++) {
+                buffer.putInt(indexes[i]);
+            }
+            flush(out, buffer);
+            batchStart = entries.size();
+            reset = false;
+        }
+
+        /**
+         * Writes the strings themselves and forgets the entries the batch added,
+         * which the client never sees. A pending reset stays pending.
+         */
+        private void writePlain(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            out.writeByte(PLAIN);
+            for (int i = 0; i < rows; i++) {
+                encoded[i] = isValid(i) ? entries.get(indexes[i]).getBytes(StandardCharsets.UTF_8) : null;
+                buffer.putInt(encoded[i] != null ? encoded[i].length : 0);
+            }
+            flush(out, buffer);
+            for (int i = 0; i < rows; i++) {
+                if (encoded[i] != null) {
+                    out.write(encoded[i]);
+                    encoded[i] = null;
+                }
+            }
+            for (int i = entries.size() - 1; i >= batchStart; i--) {
+                String entry = entries.remove(i);
+                dictionary.remove(entry);
+                dictionaryChars -= entry.length();
+            }
+        }
+
+        @Override
+        void clear(int rows) {
+            super.clear(rows);
+            present = 0;
+            // high-cardinality columns would otherwise grow the dictionary without bound
+            if (dictionaryChars > maxDictionaryChars) {
+                dictionary.clear();
+                entries.clear();
+                dictionaryChars = 0;
+                batchStart = 0;
+                reset = true;
+            }
+        }
+    }
+
+    private static final class BinaryVector extends ColumnVector {
+        private final byte[][] values;
+
+        BinaryVector(int capacity) {
+            super(BINARY, 0, capacity);
+            values = new byte[capacity][];
+        }
+
+        @Override
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            values[row] = rs.getBytes(column);
+            if (values[row] != null) {
+                setValid(row);
+            }
+        }
+
+        @Override
+        void writeValues(DataOutputStream out, int rows, ByteBuffer buffer) throws IOException {
+            for (int i = 0; i < rows; i++) {
+                buffer.putInt(values[i] != null ? values[i].length : 0);
+            }
+            flush(out, buffer);
+            for (int i = 0; i < rows; i++) {
+                if (values[i] != null) {
+                    out.write(values[i]);
+                }
+            }
+        }
+
+        @Override
+        void clear(int rows) {
+            super.clear(rows);
+            Arrays.fill(values, 0, rows, null);
+        }
+    }
+}
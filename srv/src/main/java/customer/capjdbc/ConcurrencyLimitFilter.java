@@ -0,0 +1,131 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control for {@code /rest/**}: each endpoint group runs behind an
+ * {@link AdaptiveConcurrencyLimiter} and requests over the current limit are
+ * answered immediately with 503 and {@code Retry-After}.
+ *
+ * Async requests keep their slot until completed. Their duration is a latency
+ * sample unless the group streams its responses.
+ *
+ * Exposes {@code rest.concurrency.limit}, {@code rest.concurrency.inflight} and
+ * {@code rest.concurrency.shed}, tagged with the group.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    static final String DEFAULT_GROUP = "default";
+
+    private final ConcurrencyLimitProperties properties;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        for (String group : properties.getGroups()) {
+            limiters.put(group, createLimiter(group, registry));
+        }
+        limiters.put(DEFAULT_GROUP, createLimiter(DEFAULT_GROUP, registry));
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(String group, MeterRegistry registry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties.resolveInitialLimit(group),
+                properties.getMinLimit(), properties.resolveMaxLimit(group),
+                properties.resolveLatencyThreshold(group).toNanos(), properties.getBackoffRatio());
+        Gauge.builder("rest.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("group", group).register(registry);
+        Gauge.builder("rest.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("group", group).register(registry);
+        FunctionCounter.builder("rest.concurrency.shed", limiter, AdaptiveConcurrencyLimiter::getShed)
+                .tag("group", group).register(registry);
+        return limiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String group = resolveGroup(request);
+        final AdaptiveConcurrencyLimiter limiter = limiters.get(group);
+        final boolean streaming = properties.getStreamingGroups().contains(group);
+        final int inFlightAtStart = limiter.tryAcquire();
+        if (inFlightAtStart < 0) {
+            LOGGER.debug("Shedding {} {}, limit of group {} is {}", request.getMethod(), request.getRequestURI(),
+                    group, limiter.getLimit());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", String.valueOf(properties.getRetryAfterSeconds()));
+            return;
+        }
+
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (streaming) {
+                            limiter.release();
+                        } else {
+                            limiter.release(inFlightAtStart, System.nanoTime() - start, response.getStatus() >= 500);
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                limiter.release(inFlightAtStart, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    String resolveGroup(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, String> route : properties.getPaths().entrySet()) {
+            if (limiters.containsKey(route.getKey()) && pathMatcher.match(route.getValue(), path)) {
+                return route.getKey();
+            }
+        }
+        if (path.startsWith("/rest/")) {
+            int end = path.indexOf('/', 6);
+            String segment = end < 0 ? path.substring(6) : path.substring(6, end);
+            if (limiters.containsKey(segment)) {
+                return segment;
+            }
+        }
+        return DEFAULT_GROUP;
+    }
+}
@@ -0,0 +1,161 @@
+package customer.capjdbc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the admission control on {@code /rest/**}, bound from
+ * {@code rest.concurrency-limit}. Every listed group (the first path segment
+ * after {@code /rest}, or a group of {@code paths}) gets its own limit; all
+ * other endpoints share "default".
+ */
+@Component
+@ConfigurationProperties(prefix = "rest.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+    private List<String> groups = new ArrayList<>(Arrays.asList("tables", "fanout", "lookups"));
+    /** Groups by Ant path pattern, checked before the first path segment. */
+    private Map<String, String> paths = new LinkedHashMap<>();
+    /** Groups whose async responses stream, so their duration is not a latency sample. */
+    private List<String> streamingGroups = new ArrayList<>(Arrays.asList("tables"));
+    private int initialLimit = 20;
+    /** Per-group overrides of the initial limit. */
+    private Map<String, Integer> initialLimits = new HashMap<>();
+    private int minLimit = 2;
+    private int maxLimit = 200;
+    /** Per-group overrides of the maximum limit. */
+    private Map<String, Integer> maxLimits = new HashMap<>();
+    private Duration latencyThreshold = Duration.ofSeconds(2);
+    /** Per-group overrides of the latency threshold. */
+    private Map<String, Duration> latencyThresholds = new HashMap<>();
+    private double backoffRatio = 0.9;
+    private int retryAfterSeconds = 1;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<String> groups) {
+        this.groups = groups;
+    }
+
+    public Map<String, String> getPaths() {
+        return paths;
+    }
+
+    public void setPaths(Map<String, String> paths) {
+        this.paths = paths;
+    }
+
+    public List<String> getStreamingGroups() {
+        return streamingGroups;
+    }
+
+    public void setStreamingGroups(List<String> streamingGroups) {
+        this.streamingGroups = streamingGroups;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public Map<String, Integer> getInitialLimits() {
+        return initialLimits;
+    }
+
+    public void setInitialLimits(Map<String, Integer> initialLimits) {
+        this.initialLimits = initialLimits;
+    }
+
+    public int resolveInitialLimit(String group) {
+        Integer limit = initialLimits.get(group);
+        return limit != null ? limit : initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public Map<String, Integer> getMaxLimits() {
+        return maxLimits;
+    }
+
+    public void setMaxLimits(Map<String, Integer> maxLimits) {
+        this.maxLimits = maxLimits;
+    }
+
+    public int resolveMaxLimit(String group) {
+        Integer limit = maxLimits.get(group);
+        return limit != null ? limit : maxLimit;
+    }
+
+    public Duration getLatencyThreshold() {
+        return latencyThreshold;
+    }
+
+    public void setLatencyThreshold(Duration latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    public Map<String, Duration> getLatencyThresholds() {
+        return latencyThresholds;
+    }
+
+    public void setLatencyThresholds(Map<String, Duration> latencyThresholds) {
+        this.latencyThresholds = latencyThresholds;
+    }
+
+    public Duration resolveLatencyThreshold(String group) {
+        Duration threshold = latencyThresholds.get(group);
+        return threshold != null ? threshold : latencyThreshold;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -46,12 +46,14 @@ public class ConnectivitySocks5ProxySocket extends Socket {
  
     private  String jwtToken;
     private  String sccLocationId;
+    private  String locationName;
  
     public ConnectivitySocks5ProxySocket() {
        this.sccLocationId="";
     }
     public ConnectivitySocks5ProxySocket(String jwtToken, String sccLocationId) {
         this.jwtToken = jwtToken;
+        this.locationName = sccLocationId;
         this.sccLocationId = sccLocationId != null ? Base64.getEncoder().encodeToString(sccLocationId.getBytes()) : "";
     }
     public InetSocketAddress getProxyAddress() {
@@ -78,7 +80,15 @@ public class ConnectivitySocks5ProxySocket extends Socket {
             tokenRequest.setGrantType(GrantType.CLIENT_CREDENTIALS);
             tokenRequest.setClientId(clientid);
             tokenRequest.setClientSecret(clientsecret);
-            UaaContext xsuaaContext = factory.authenticate(tokenRequest);
+            TokenFetchEvent tokenEvent = TokenFetchEvent.begin(xsuaaUrl.toString(), clientid);
+            UaaContext xsuaaContext;
+            try {
+                xsuaaContext = factory.authenticate(tokenRequest);
+            } catch (RuntimeException ex) {
+                tokenEvent.finish(false);
+                throw ex;
+            }
+            tokenEvent.finish(true);
             CompositeAccessToken accessToken = xsuaaContext.getToken();
             this.jwtToken = accessToken.getValue();
              LOGGER.error( "jwtToken:" +jwtToken);
@@ -99,15 +109,28 @@ public class ConnectivitySocks5ProxySocket extends Socket {
  
     @Override
     public void connect(SocketAddress endpoint, int timeout) throws IOException {
-        super.connect(getProxyAddress(), timeout);
+        InetSocketAddress target = (InetSocketAddress) endpoint;
+        InetSocketAddress proxyAddress = getProxyAddress();
+
+        Socks5ConnectEvent event = Socks5ConnectEvent.begin(Socks5ConnectEvent.PROXY_CONNECT);
+        try {
+            super.connect(proxyAddress, timeout);
  
-        OutputStream outputStream = getOutputStream();
+            OutputStream outputStream = getOutputStream();
  
-        executeSOCKS5InitialRequest(outputStream);
+            event = event.next(Socks5ConnectEvent.INITIAL_REQUEST, target, locationName);
+            executeSOCKS5InitialRequest(outputStream);
  
-        executeSOCKS5AuthenticationRequest(outputStream);
+            event = event.next(Socks5ConnectEvent.AUTHENTICATION, target, locationName);
+            executeSOCKS5AuthenticationRequest(outputStream);
  
-        executeSOCKS5ConnectRequest(outputStream, (InetSocketAddress) endpoint);
+            event = event.next(Socks5ConnectEvent.CONNECT_COMMAND, target, locationName);
+            executeSOCKS5ConnectRequest(outputStream, target);
+            event.finish(target, locationName, "OK");
+        } catch (IOException ex) {
+            event.finish(target, locationName, ex.getMessage());
+            throw ex;
+        }
     }
  
     private void executeSOCKS5InitialRequest(OutputStream outputStream) throws IOException {
@@ -0,0 +1,345 @@
+package customer.capjdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sap.cds.ql.cqn.CqnComparisonPredicate;
+import com.sap.cds.ql.cqn.CqnConnectivePredicate;
+import com.sap.cds.ql.cqn.CqnElementRef;
+import com.sap.cds.ql.cqn.CqnFunc;
+import com.sap.cds.ql.cqn.CqnLiteral;
+import com.sap.cds.ql.cqn.CqnNegation;
+import com.sap.cds.ql.cqn.CqnNullValue;
+import com.sap.cds.ql.cqn.CqnPredicate;
+import com.sap.cds.ql.cqn.CqnSelect;
+import com.sap.cds.ql.cqn.CqnSelectListItem;
+import com.sap.cds.ql.cqn.CqnSelectListValue;
+import com.sap.cds.ql.cqn.CqnSortSpecification;
+import com.sap.cds.ql.cqn.CqnStar;
+import com.sap.cds.ql.cqn.CqnValue;
+import com.sap.cds.reflect.CdsElement;
+import com.sap.cds.reflect.CdsStructuredType;
+import com.sap.cds.services.ErrorStatuses;
+import com.sap.cds.services.ServiceException;
+
+/**
+ * Translates a CQN {@link CqnSelect} on a CDS entity backed by an on-prem table
+ * into parameterized T-SQL, so that filtering ({@code $filter}), projection
+ * ({@code $select}), ordering and paging ({@code $orderby}, {@code $top},
+ * {@code $skip}) and counting ({@code $count}) run in SQL Server.
+ *
+ * Element names map one to one to the column names allowed for the table; a
+ * select without explicit elements reads all elements of the entity. Key
+ * access ({@code /Devices(42)}) arrives as a filter on the entity reference and
+ * is combined with {@code $filter}. Every select fetches at most
+ * {@code maxRows} rows, so a request without {@code $top} cannot pull the whole
+ * table through the tunnel. Expressions without a T-SQL translation, as well as
+ * {@code $search}, {@code $apply} grouping, {@code DISTINCT} and navigation
+ * paths, are rejected rather than evaluated in memory, for the same reason.
+ */
+public class CqnSqlServerTranslator {
+
+    private final OnPremProperties.Table table;
+    private final CdsStructuredType target;
+    private final long maxRows;
+
+    public CqnSqlServerTranslator(OnPremProperties.Table table, CdsStructuredType target, long maxRows) {
+        this.table = table;
+        this.target = target;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * A statement with its positional parameters.
+     */
+    public static class SqlStatement {
+        private final String sql;
+        private final List<Object> parameters;
+
+        SqlStatement(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        public void bind(PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, toJdbc(parameters.get(i)));
+            }
+        }
+
+        private static Object toJdbc(Object value) {
+            if (value instanceof Instant) {
+                return Timestamp.from((Instant) value);
+            }
+            if (value instanceof LocalDate) {
+                return java.sql.Date.valueOf((LocalDate) value);
+            }
+            if (value instanceof LocalTime) {
+                return Time.valueOf((LocalTime) value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Selected elements in result order: pairs of element name (the key in the
+     * result rows) and column name. Empty if the select only counts.
+     */
+    public List<String[]> projection(CqnSelect select) {
+        List<String[]> projection = new ArrayList<>();
+        boolean star = select.items().isEmpty();
+        for (CqnSelectListItem item : select.items()) {
+            if (item instanceof CqnStar) {
+                star = true;
+                continue;
+            }
+            if (!(item instanceof CqnSelectListValue)) {
+                throw unsupported("select item " + item);
+            }
+            CqnSelectListValue value = (CqnSelectListValue) item;
+            if (isCount(value)) {
+                continue;
+            }
+            if (!(value.value() instanceof CqnElementRef)) {
+                throw unsupported("select item " + value.displayName());
+            }
+            projection.add(new String[] { value.displayName(), column((CqnElementRef) value.value()) });
+        }
+        if (star) {
+            // '*': the readable elements of the entity, associations are not columns
+            target.elements().filter(element -> !element.getType().isAssociation() && !element.isVirtual())
+                    .map(CdsElement::getName).filter(element -> table.resolveColumn(element) != null)
+                    .filter(element -> projection.stream().noneMatch(selected -> selected[0].equals(element)))
+                    .forEach(element -> projection.add(new String[] { element, column(element) }));
+        }
+        return projection;
+    }
+
+    /**
+     * True for {@code /Entity/$count}, which selects nothing but the count.
+     */
+    public boolean isCountOnly(CqnSelect select) {
+        List<CqnSelectListItem> items = select.items();
+        return items.size() == 1 && items.get(0) instanceof CqnSelectListValue
+                && isCount((CqnSelectListValue) items.get(0));
+    }
+
+    public String countAlias(CqnSelect select) {
+        return ((CqnSelectListValue) select.items().get(0)).displayName();
+    }
+
+    public SqlStatement select(CqnSelect select, List<String[]> projection) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < projection.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(SqlServerDialect.quote(projection.get(i)[1]));
+        }
+        sql.append(" FROM ").append(SqlServerDialect.quote(table.getName()));
+        appendWhere(select, sql, parameters);
+
+        List<CqnSortSpecification> orderBy = select.orderBy();
+        long top = select.top() >= 0 ? Math.min(select.top(), maxRows) : maxRows;
+        long skip = Math.max(select.skip(), 0);
+        if (!orderBy.isEmpty()) {
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < orderBy.size(); i++) {
+                CqnSortSpecification sort = orderBy.get(i);
+                if (!(sort.value() instanceof CqnElementRef)) {
+                    throw unsupported("$orderby expression");
+                }
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(SqlServerDialect.quote(column((CqnElementRef) sort.value())));
+                if (sort.order().name().startsWith("DESC")) {
+                    sql.append(" DESC");
+                }
+            }
+        } else {
+            // OFFSET/FETCH needs an order, the key keeps pages stable
+            sql.append(" ORDER BY ").append(SqlServerDialect.quote(table.getKey()));
+        }
+        sql.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        parameters.add(skip);
+        parameters.add(top);
+        return new SqlStatement(sql.toString(), parameters);
+    }
+
+    public SqlStatement count(CqnSelect select) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT_BIG(*) FROM ")
+                .append(SqlServerDialect.quote(table.getName()));
+        appendWhere(select, sql, parameters);
+        return new SqlStatement(sql.toString(), parameters);
+    }
+
+    private void appendWhere(CqnSelect select, StringBuilder sql, List<Object> parameters) {
+        checkSupported(select);
+        List<CqnPredicate> predicates = new ArrayList<>();
+        select.ref().targetSegment().filter().ifPresent(predicates::add);
+        select.where().ifPresent(predicates::add);
+        for (int i = 0; i < predicates.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ");
+            predicate(predicates.get(i), sql, parameters);
+        }
+    }
+
+    private static void checkSupported(CqnSelect select) {
+        if (select.ref().segments().size() > 1) {
+            throw unsupported("navigation path");
+        }
+        if (select.search().isPresent()) {
+            throw unsupported("$search");
+        }
+        if (!select.groupBy().isEmpty() || select.having().isPresent()) {
+            throw unsupported("grouping");
+        }
+        if (select.isDistinct()) {
+            throw unsupported("DISTINCT");
+        }
+    }
+
+    private void predicate(CqnPredicate predicate, StringBuilder sql, List<Object> parameters) {
+        if (predicate instanceof CqnConnectivePredicate) {
+            CqnConnectivePredicate connective = (CqnConnectivePredicate) predicate;
+            String operator = " " + connective.operator().name() + " ";
+            sql.append('(');
+            List<CqnPredicate> operands = connective.predicates();
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) {
+                    sql.append(operator);
+                }
+                predicate(operands.get(i), sql, parameters);
+            }
+            sql.append(')');
+        } else if (predicate instanceof CqnNegation) {
+            sql.append("NOT (");
+            predicate(((CqnNegation) predicate).predicate(), sql, parameters);
+            sql.append(')');
+        } else if (predicate instanceof CqnComparisonPredicate) {
+            comparison((CqnComparisonPredicate) predicate, sql, parameters);
+        } else if (predicate instanceof CqnFunc) {
+            function((CqnFunc) predicate, sql, parameters);
+        } else {
+            throw unsupported("$filter expression " + predicate);
+        }
+    }
+
+    private void comparison(CqnComparisonPredicate comparison, StringBuilder sql, List<Object> parameters) {
+        CqnValue left = comparison.left();
+        CqnValue right = comparison.right();
+        boolean nullTest = left instanceof CqnNullValue || right instanceof CqnNullValue;
+        String operator;
+        switch (comparison.operator()) {
+            case EQ:
+                operator = nullTest ? " IS " : " = ";
+                break;
+            case NE:
+                operator = nullTest ? " IS NOT " : " <> ";
+                break;
+            case IS:
+                operator = " IS ";
+                break;
+            case IS_NOT:
+                operator = " IS NOT ";
+                break;
+            case GT:
+                operator = " > ";
+                break;
+            case GE:
+                operator = " >= ";
+                break;
+            case LT:
+                operator = " < ";
+                break;
+            case LE:
+                operator = " <= ";
+                break;
+            default:
+                throw unsupported("operator " + comparison.operator());
+        }
+        value(left, sql, parameters);
+        sql.append(operator);
+        value(right, sql, parameters);
+    }
+
+    private void function(CqnFunc func, StringBuilder sql, List<Object> parameters) {
+        String name = func.func().toLowerCase();
+        List<CqnValue> args = func.args();
+        switch (name) {
+            case "contains":
+            case "startswith":
+            case "endswith":
+                value(args.get(0), sql, parameters);
+                sql.append(" LIKE ? ESCAPE '\\'");
+                if (!(args.get(1) instanceof CqnLiteral)) {
+                    throw unsupported(name + " with a non-literal pattern");
+                }
+                String text = String.valueOf(((CqnLiteral<?>) args.get(1)).value())
+                        .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[");
+                parameters.add(("startswith".equals(name) ? "" : "%") + text + ("endswith".equals(name) ? "" : "%"));
+                break;
+            case "tolower":
+            case "toupper":
+                sql.append("tolower".equals(name) ? "LOWER(" : "UPPER(");
+                value(args.get(0), sql, parameters);
+                sql.append(')');
+                break;
+            default:
+                throw unsupported("function " + func.func());
+        }
+    }
+
+    private void value(CqnValue value, StringBuilder sql, List<Object> parameters) {
+        if (value instanceof CqnElementRef) {
+            sql.append(SqlServerDialect.quote(column((CqnElementRef) value)));
+        } else if (value instanceof CqnNullValue) {
+            sql.append("NULL");
+        } else if (value instanceof CqnLiteral) {
+            sql.append('?');
+            parameters.add(((CqnLiteral<?>) value).value());
+        } else if (value instanceof CqnFunc) {
+            function((CqnFunc) value, sql, parameters);
+        } else {
+            throw unsupported("expression " + value);
+        }
+    }
+
+    private String column(CqnElementRef ref) {
+        return column(ref.displayName());
+    }
+
+    private String column(String element) {
+        String column = table.resolveColumn(element);
+        if (column == null) {
+            throw new ServiceException(ErrorStatuses.BAD_REQUEST, "Element {} is not readable", element);
+        }
+        return column;
+    }
+
+    private static boolean isCount(CqnSelectListValue value) {
+        return value.value() instanceof CqnFunc && "count".equalsIgnoreCase(((CqnFunc) value.value()).func());
+    }
+
+    private static ServiceException unsupported(String what) {
+        return new ServiceException(ErrorStatuses.NOT_IMPLEMENTED, "Unsupported {} on an on-prem entity", what);
+    }
+}
@@ -37,12 +37,20 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
             dummyLog.add(arg);
         }
 
+        // the constructor argument (socketFactoryConstructorArg) is the Cloud Connector location ID
+        private ConnectivitySocks5ProxySocket newProxySocket() {
+            if (arg == null || arg.isEmpty()) {
+                return new ConnectivitySocks5ProxySocket();
+            }
+            return new ConnectivitySocks5ProxySocket(null, arg);
+        }
+
         @Override
         public Socket createSocket() throws IOException {
             logUsage();
             LOGGER.error("DummySocketFactory createSocket 1");
             InetSocketAddress vAddr = InetSocketAddress.createUnresolved(myhostName, myport);
-             ConnectivitySocks5ProxySocket proxySocket = new ConnectivitySocks5ProxySocket();
+             ConnectivitySocks5ProxySocket proxySocket = newProxySocket();
             proxySocket.connect(vAddr,3600);
             return proxySocket;
             
@@ -54,7 +62,7 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
             LOGGER.error("DummySocketFactory createSocket 2");
              //InetSocketAddress vAddr = InetSocketAddress.createUnresolved(host, port);
              InetSocketAddress vAddr = InetSocketAddress.createUnresolved(myhostName, myport);
-            ConnectivitySocks5ProxySocket proxySocket = new ConnectivitySocks5ProxySocket();
+            ConnectivitySocks5ProxySocket proxySocket = newProxySocket();
             proxySocket.connect(vAddr,3600);
            return proxySocket;
          
@@ -76,7 +84,7 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
             //return new Socket(host, port);
              //InetSocketAddress vAddr = InetSocketAddress.createUnresolved(host.getHostName(), port);
              InetSocketAddress vAddr = InetSocketAddress.createUnresolved(myhostName, myport);
-             ConnectivitySocks5ProxySocket proxySocket = new ConnectivitySocks5ProxySocket();
+             ConnectivitySocks5ProxySocket proxySocket = newProxySocket();
             proxySocket.connect(vAddr,3600);
            return proxySocket;
         }
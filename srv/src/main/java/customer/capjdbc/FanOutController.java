@@ -0,0 +1,84 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Runs a query from {@code onprem.queries} against several Cloud Connector
+ * locations from {@code onprem.locations} in parallel. The merged rows are
+ * streamed as newline-delimited JSON, one {@code {"row":{...}}} line each, while
+ * the locations answer, followed by one {@code {"locations":[...],"complete":..}}
+ * line with the status of every location. The HTTP status is sent before any
+ * location has answered, so it is 200 even if all of them fail: only the last
+ * line tells, and a response without it was cut off.
+ */
+@RestController
+@RequestMapping(value = "/rest/fanout")
+public class FanOutController {
+    static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    OnPremProperties properties;
+    @Autowired
+    FanOutQueryService fanOutQueryService;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PostMapping(value = "/{query}", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> fanOut(@PathVariable String query,
+            @RequestBody FanOutRequest request) {
+        OnPremProperties.Query config = properties.getQueries().get(query);
+        if (config == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown query " + query);
+        }
+        List<String> locations = request.getLocations();
+        if (locations == null || locations.isEmpty()) {
+            locations = properties.getLocations();
+        }
+        for (String location : locations) {
+            if (!properties.getLocations().contains(location)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown location " + location);
+            }
+        }
+        if (locations.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No locations configured");
+        }
+        Duration timeout = request.getTimeoutMillis() != null
+                ? Duration.ofMillis(request.getTimeoutMillis())
+                : properties.getFanOutTimeout();
+        if (timeout.isNegative() || timeout.isZero() || timeout.compareTo(properties.getFanOutTimeout()) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "timeoutMillis must be between 1 and " + properties.getFanOutTimeout().toMillis());
+        }
+
+        List<String> selected = locations;
+        StreamingResponseBody body = out -> {
+            List<FanOutResult.LocationStatus> statuses = fanOutQueryService.execute(config, selected,
+                    request.getParameters(), timeout, row -> writeLine(out, Collections.singletonMap("row", row)));
+            writeLine(out, new FanOutResult(statuses));
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
+}
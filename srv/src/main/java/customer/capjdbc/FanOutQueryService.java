@@ -0,0 +1,434 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs one parameterized query against several Cloud Connector locations at
+ * once and streams the merged rows. Every location has its own connection pool
+ * and runs on its own thread, so the total latency is that of the slowest
+ * location within the timeout. Locations that fail or miss the deadline are
+ * reported in the returned statuses instead of failing the whole request.
+ *
+ * Rows are handed over through bounded queues of {@link #BUFFERED_ROWS} rows
+ * per location, so neither a large result nor a slow client is held in memory:
+ * a location whose queue is full waits, within the deadline, until the merge
+ * takes its rows. CONCAT writes rows in arrival order and ORDERED merges the
+ * heads of the locations as they arrive. AGGREGATE keeps one row per group and
+ * writes them once all locations have answered or timed out.
+ *
+ * Waiting for a pooled connection, the query and handing over rows are all
+ * bounded by the remaining deadline, and statements still running at the
+ * deadline are cancelled, so a slow location does not keep its thread and
+ * connection. Rows a location sent before it failed or timed out have already
+ * been written.
+ */
+@Component
+public class FanOutQueryService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FanOutQueryService.class);
+
+    static final int BUFFERED_ROWS = 1000;
+
+    private final OnPremDataSource onPremDataSource;
+    private final ThreadPoolExecutor executor;
+
+    public FanOutQueryService(OnPremProperties properties, OnPremDataSource onPremDataSource) {
+        this.onPremDataSource = onPremDataSource;
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getFanOutMaxThreads(), properties.getFanOutMaxThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "fanout-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Receives the merged rows; an {@link IOException}, e.g. from a client that
+     * went away, cancels the remaining locations.
+     */
+    public interface RowSink {
+        void write(Map<String, Object> row) throws IOException;
+    }
+
+    /**
+     * Rows of one location in its order; {@code null} once the location is done
+     * or the deadline has passed.
+     */
+    interface RowSource {
+        Map<String, Object> next() throws InterruptedException;
+    }
+
+    public List<FanOutResult.LocationStatus> execute(OnPremProperties.Query query, List<String> locations,
+            List<Object> parameters, Duration timeout, RowSink sink) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+
+        // ORDERED needs the next row of a particular location, the others take any
+        boolean ordered = query.getMerge() == OnPremProperties.MergeMode.ORDERED;
+        BlockingQueue<Item> shared = ordered ? null : new ArrayBlockingQueue<>(BUFFERED_ROWS);
+        List<LocationQuery> queries = new ArrayList<>();
+        List<FanOutResult.LocationStatus> statuses = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (String location : locations) {
+            LocationQuery locationQuery = new LocationQuery(location, query.getSql(), parameters, start, deadline,
+                    ordered ? new ArrayBlockingQueue<>(BUFFERED_ROWS) : shared);
+            queries.add(locationQuery);
+            statuses.add(locationQuery.status);
+            futures.add(executor.submit(locationQuery));
+        }
+
+        try {
+            switch (query.getMerge()) {
+                case ORDERED:
+                    new OrderedMerger(query.getOrderBy(), query.isDescending()).merge(queries, sink);
+                    break;
+                case AGGREGATE:
+                    AggregateMerger aggregate = new AggregateMerger(query.getAggregates());
+                    drain(shared, queries.size(), deadline, aggregate::add);
+                    for (Map<String, Object> row : aggregate.result()) {
+                        sink.write(row);
+                    }
+                    break;
+                default:
+                    drain(shared, queries.size(), deadline, sink);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i = 0; i < queries.size(); i++) {
+                LocationQuery timedOut = queries.get(i);
+                if (!timedOut.finished) {
+                    futures.get(i).cancel(true);
+                    timedOut.cancel();
+                    timedOut.status.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    timedOut.status.setMessage("No result within " + timeout.toMillis() + " ms");
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Writes rows from the shared queue in arrival order until every location is
+     * done; after the deadline only rows already queued are taken.
+     */
+    private static void drain(BlockingQueue<Item> queue, int locations, long deadline, RowSink sink)
+            throws IOException, InterruptedException {
+        int open = locations;
+        while (open > 0) {
+            Item item = poll(queue, deadline);
+            if (item == null) {
+                return;
+            }
+            Map<String, Object> row = item.source.accept(item);
+            if (row != null) {
+                sink.write(row);
+            } else {
+                open--;
+            }
+        }
+    }
+
+    private static Item poll(BlockingQueue<Item> queue, long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        return remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+    }
+
+    /**
+     * A row of a location, or its end with the error it failed with, if any.
+     */
+    private static final class Item {
+        final LocationQuery source;
+        final Map<String, Object> row;
+        final String error;
+
+        Item(LocationQuery source, Map<String, Object> row, String error) {
+            this.source = source;
+            this.row = row;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The query at one location. Interrupting the thread does not stop a JDBC
+     * socket read, so the running statement is kept to be cancelled. The status
+     * is only updated by the merging thread, from what arrives through the queue.
+     */
+    private final class LocationQuery implements Callable<Void>, RowSource {
+        private final FanOutResult.LocationStatus status;
+        private final String sql;
+        private final List<Object> parameters;
+        private final long start;
+        private final long deadline;
+        private final BlockingQueue<Item> queue;
+        private volatile Statement statement;
+        private volatile boolean cancelled;
+        private int rows;
+        private boolean finished;
+
+        LocationQuery(String location, String sql, List<Object> parameters, long start, long deadline,
+                BlockingQueue<Item> queue) {
+            this.status = new FanOutResult.LocationStatus(location);
+            this.sql = sql;
+            this.parameters = parameters;
+            this.start = start;
+            this.deadline = deadline;
+            this.queue = queue;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            String error = null;
+            try {
+                query();
+            } catch (SQLException | RuntimeException e) {
+                error = String.valueOf(e.getMessage());
+                LOGGER.warn("Fan-out query at location {} failed: {}", status.getLocation(), e);
+            } finally {
+                queue.offer(new Item(this, null, error), Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+            }
+            return null;
+        }
+
+        private void query() throws SQLException, InterruptedException {
+            try (Connection con = onPremDataSource.getConnection(status.getLocation(), remainingMillis());
+                    PreparedStatement stmt = con.prepareStatement(sql)) {
+                stmt.setQueryTimeout((int) Math.max(1, (remainingMillis() + 999) / 1000));
+                for (int i = 0; i < parameters.size(); i++) {
+                    stmt.setObject(i + 1, parameters.get(i));
+                }
+                statement = stmt;
+                if (cancelled) {
+                    throw new SQLException("Cancelled at the fan-out deadline");
+                }
+                JdbcStatementEvent event = JdbcStatementEvent.begin(sql);
+                long sent = 0;
+                boolean success = false;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    int columns = meta.getColumnCount();
+                    while (rs.next()) {
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int i = 1; i <= columns; i++) {
+                            row.put(meta.getColumnLabel(i), rs.getObject(i));
+                        }
+                        if (!queue.offer(new Item(this, row, null), remainingMillis(), TimeUnit.MILLISECONDS)) {
+                            throw new SQLTimeoutException("Fan-out deadline passed while waiting for the merge");
+                        }
+                        sent++;
+                    }
+                    success = true;
+                } finally {
+                    statement = null;
+                    event.finish(sent, success);
+                }
+            }
+        }
+
+        private long remainingMillis() throws SQLException {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                throw new SQLTimeoutException("Fan-out deadline passed");
+            }
+            return remaining;
+        }
+
+        @Override
+        public Map<String, Object> next() throws InterruptedException {
+            if (finished) {
+                return null;
+            }
+            Item item = poll(queue, deadline);
+            return item != null ? accept(item) : null;
+        }
+
+        /**
+         * Counts a row of this location, or records its outcome at its end.
+         */
+        Map<String, Object> accept(Item item) {
+            if (item.row != null) {
+                rows++;
+                return item.row;
+            }
+            finished = true;
+            status.setRows(rows);
+            status.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (item.error == null) {
+                status.setStatus(FanOutResult.Status.OK);
+            } else {
+                status.setStatus(FanOutResult.Status.ERROR);
+                status.setMessage(item.error);
+            }
+            return null;
+        }
+
+        void cancel() {
+            status.setRows(rows);
+            cancelled = true;
+            Statement running = statement;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException e) {
+                    LOGGER.debug("Cancelling the query at location {} failed: {}", status.getLocation(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * K-way merge of results that each location already returns sorted. Only
+     * the current head of every location is held; the merge waits for the next
+     * row of the location whose head was written.
+     */
+    static final class OrderedMerger {
+        private final String column;
+        private final boolean descending;
+
+        OrderedMerger(String column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        void merge(List<? extends RowSource> sources, RowSink sink) throws IOException, InterruptedException {
+            Map<RowSource, Map<String, Object>> heads = new HashMap<>();
+            Comparator<RowSource> order = (a, b) -> compareValues(heads.get(a).get(column), heads.get(b).get(column));
+            PriorityQueue<RowSource> queue = new PriorityQueue<>(Math.max(1, sources.size()),
+                    descending ? order.reversed() : order);
+            for (RowSource source : sources) {
+                Map<String, Object> head = source.next();
+                if (head != null) {
+                    heads.put(source, head);
+                    queue.add(source);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RowSource source = queue.poll();
+                sink.write(heads.get(source));
+                Map<String, Object> head = source.next();
+                if (head != null) {
+                    heads.put(source, head);
+                    queue.add(source);
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines rows with equal non-aggregate columns, e.g. per-location COUNT or
+     * SUM results (optionally grouped) into totals across all locations.
+     */
+    static final class AggregateMerger {
+        private final Map<String, OnPremProperties.Aggregate> aggregates;
+        private final Map<List<Object>, Map<String, Object>> groups = new LinkedHashMap<>();
+
+        AggregateMerger(Map<String, OnPremProperties.Aggregate> aggregates) {
+            this.aggregates = aggregates;
+        }
+
+        void add(Map<String, Object> row) {
+            List<Object> key = new ArrayList<>();
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                if (!aggregates.containsKey(column.getKey())) {
+                    key.add(column.getValue());
+                }
+            }
+            Map<String, Object> combined = groups.get(key);
+            if (combined == null) {
+                groups.put(key, new LinkedHashMap<>(row));
+                return;
+            }
+            for (Map.Entry<String, OnPremProperties.Aggregate> aggregate : aggregates.entrySet()) {
+                String column = aggregate.getKey();
+                combined.put(column, combine(aggregate.getValue(), combined.get(column), row.get(column)));
+            }
+        }
+
+        List<Map<String, Object>> result() {
+            return new ArrayList<>(groups.values());
+        }
+
+        private static Object combine(OnPremProperties.Aggregate aggregate, Object a, Object b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            switch (aggregate) {
+                case MIN:
+                    return compareValues(a, b) <= 0 ? a : b;
+                case MAX:
+                    return compareValues(a, b) >= 0 ? a : b;
+                default:
+                    return add((Number) a, (Number) b);
+            }
+        }
+
+        private static Number add(Number a, Number b) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return a.longValue() + b.longValue();
+            }
+            if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+                return a.doubleValue() + b.doubleValue();
+            }
+            return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+        }
+
+        private static boolean isIntegral(Number n) {
+            return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+        }
+    }
+
+    /**
+     * Orders values of one column, nulls first; numbers of different types are
+     * compared by value.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,39 @@
+package customer.capjdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Body of a fan-out query request. Without locations the query runs against all
+ * configured locations; without a timeout {@code onprem.fan-out-timeout} applies.
+ */
+public class FanOutRequest {
+
+    private List<String> locations;
+    private List<Object> parameters = new ArrayList<>();
+    private Long timeoutMillis;
+
+    public List<String> getLocations() {
+        return locations;
+    }
+
+    public void setLocations(List<String> locations) {
+        this.locations = locations;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(List<Object> parameters) {
+        this.parameters = parameters;
+    }
+
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
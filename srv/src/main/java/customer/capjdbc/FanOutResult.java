@@ -0,0 +1,99 @@
+package customer.capjdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome for each location of a fan-out query, sent after the merged rows.
+ * Rows of locations that failed or timed out are missing or partial, so check
+ * the statuses before treating the rows as complete; {@code rows} counts the
+ * rows of a location that were merged.
+ */
+public class FanOutResult {
+
+    public enum Status {
+        OK, ERROR, TIMEOUT
+    }
+
+    private List<LocationStatus> locations = new ArrayList<>();
+
+    public FanOutResult() {
+    }
+
+    public FanOutResult(List<LocationStatus> locations) {
+        this.locations = locations;
+    }
+
+    public boolean isComplete() {
+        for (LocationStatus location : locations) {
+            if (location.getStatus() != Status.OK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<LocationStatus> getLocations() {
+        return locations;
+    }
+
+    public void setLocations(List<LocationStatus> locations) {
+        this.locations = locations;
+    }
+
+    public static class LocationStatus {
+
+        private String location;
+        private Status status = Status.TIMEOUT;
+        private int rows;
+        private long elapsedMillis;
+        private String message;
+
+        public LocationStatus() {
+        }
+
+        public LocationStatus(String location) {
+            this.location = location;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public void setRows(int rows) {
+            this.rows = rows;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public void setElapsedMillis(long elapsedMillis) {
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
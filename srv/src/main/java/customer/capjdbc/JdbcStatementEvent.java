@@ -0,0 +1,47 @@
+package customer.capjdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Execution of a statement against the on-prem SQL Server including reading
+ * its rows, recorded above the threshold.
+ */
+@Name("customer.capjdbc.JdbcStatement")
+@Label("On-Prem JDBC Statement")
+@Description("Statement execution against the on-prem SQL Server")
+@Category({ "capjdbc", "JDBC" })
+@Threshold("500 ms")
+@StackTrace(false)
+public class JdbcStatementEvent extends Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Success")
+    boolean success;
+
+    static JdbcStatementEvent begin(String sql) {
+        JdbcStatementEvent event = new JdbcStatementEvent();
+        event.sql = sql;
+        event.begin();
+        return event;
+    }
+
+    void finish(long rowCount, boolean result) {
+        end();
+        if (shouldCommit()) {
+            rows = rowCount;
+            success = result;
+            commit();
+        }
+    }
+}
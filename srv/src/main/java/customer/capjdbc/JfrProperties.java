@@ -0,0 +1,80 @@
+package customer.capjdbc;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the continuous flight recording dumped through the {@code jfr}
+ * actuator endpoint, bound from {@code jfr}. No recording runs unless enabled,
+ * and without a recording the application events are not even timed.
+ */
+@Component
+@ConfigurationProperties(prefix = "jfr")
+public class JfrProperties {
+
+    private boolean enabled = false;
+    private String settings = "default";
+    private Duration maxAge = Duration.ofMinutes(15);
+    private long maxSize = 100L * 1024 * 1024;
+    private Duration defaultWindow = Duration.ofMinutes(1);
+    private Duration poolBorrowThreshold = Duration.ofMillis(10);
+    private Duration statementThreshold = Duration.ofMillis(500);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSettings() {
+        return settings;
+    }
+
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getDefaultWindow() {
+        return defaultWindow;
+    }
+
+    public void setDefaultWindow(Duration defaultWindow) {
+        this.defaultWindow = defaultWindow;
+    }
+
+    public Duration getPoolBorrowThreshold() {
+        return poolBorrowThreshold;
+    }
+
+    public void setPoolBorrowThreshold(Duration poolBorrowThreshold) {
+        this.poolBorrowThreshold = poolBorrowThreshold;
+    }
+
+    public Duration getStatementThreshold() {
+        return statementThreshold;
+    }
+
+    public void setStatementThreshold(Duration statementThreshold) {
+        this.statementThreshold = statementThreshold;
+    }
+}
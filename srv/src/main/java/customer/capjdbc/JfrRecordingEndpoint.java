@@ -0,0 +1,109 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/jfr} returning the last seconds of a
+ * continuous flight recording as a .jfr file, e.g. {@code /actuator/jfr?seconds=120}.
+ * Besides the JDK events (GC, threads, sockets) the recording holds the
+ * application events: {@link Socks5ConnectEvent}, {@link TokenFetchEvent},
+ * {@link PoolBorrowEvent} and {@link JdbcStatementEvent}.
+ *
+ * The initial environment variables and system properties are not recorded:
+ * they hold {@code VCAP_SERVICES} and the on-prem database password.
+ */
+@Component
+@Endpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrRecordingEndpoint.class);
+
+    private final JfrProperties properties;
+    private Recording recording;
+
+    public JfrRecordingEndpoint(JfrProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException, ParseException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration(properties.getSettings())
+                .getSettings());
+        settings.put("jdk.InitialEnvironmentVariable#enabled", "false");
+        settings.put("jdk.InitialSystemProperty#enabled", "false");
+        recording = new Recording(settings);
+        recording.setName("capjdbc");
+        recording.setToDisk(true);
+        recording.setMaxAge(properties.getMaxAge());
+        recording.setMaxSize(properties.getMaxSize());
+        recording.enable(Socks5ConnectEvent.class);
+        recording.enable(TokenFetchEvent.class);
+        recording.enable(PoolBorrowEvent.class).withThreshold(properties.getPoolBorrowThreshold());
+        recording.enable(JdbcStatementEvent.class).withThreshold(properties.getStatementThreshold());
+        recording.start();
+        LOGGER.info("Started flight recording, keeping {}", properties.getMaxAge());
+    }
+
+    /**
+     * Returns the recorded window ending now, or nothing (404) if no recording runs.
+     * The window is written to a temporary file that is streamed to the client
+     * and deleted once sent, so even a dump of {@code max-size} stays off the heap.
+     */
+    @ReadOperation
+    public Resource dump(@Nullable Long seconds) throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        long window = seconds != null ? seconds : properties.getDefaultWindow().getSeconds();
+        Path file = Files.createTempFile("capjdbc-", ".jfr");
+        try {
+            // a stopped copy forces the chunk in progress to disk, so the window reaches up to now
+            try (Recording snapshot = recording.copy(true);
+                    InputStream in = snapshot.getStream(Instant.now().minusSeconds(window), null)) {
+                if (in == null) {
+                    Files.delete(file);
+                    return null;
+                }
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new InputStreamResource(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
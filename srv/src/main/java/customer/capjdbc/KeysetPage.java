@@ -0,0 +1,40 @@
+package customer.capjdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated table read. Rows are positional arrays in the
+ * order of {@link #getColumns()} so column names are sent once per page, not per row.
+ * {@link #getNext()} is null on the last page.
+ */
+public class KeysetPage {
+
+    private List<String> columns;
+    private List<Object[]> rows = new ArrayList<>();
+    private String next;
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+}
@@ -53,6 +53,8 @@ public class MyWebSecurityConfig extends WebSecurityConfigurerAdapter {
         http.authorizeRequests()
             .antMatchers("/rest/**").authenticated()
             .antMatchers("/odata/v4/**").authenticated()
+            .antMatchers("/actuator/health").permitAll()
+            .antMatchers("/actuator/**").hasAuthority("zadmin")
             .antMatchers("/").permitAll()
             .and()
 				.oauth2ResourceServer()
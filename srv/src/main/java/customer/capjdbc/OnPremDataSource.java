@@ -0,0 +1,130 @@
+package customer.capjdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import com.microsoft.sqlserver.jdbc.SQLServerDriver;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Pools of SQL Server connections tunneled through the connectivity SOCKS5 proxy,
+ * one per Cloud Connector location. Every physical connection pays for a token
+ * fetch and a SOCKS5 handshake, so they are kept open and reused. Pools are
+ * created on first use because the proxy is only reachable when running on
+ * Cloud Foundry.
+ *
+ * Exports hold their connection for as long as the table takes to stream, so
+ * they borrow from a separate small pool and cannot starve the other reads.
+ *
+ * Deliberately not a {@link javax.sql.DataSource} bean: that would replace the
+ * auto-configured SQLite data source used by the CDS persistence service.
+ */
+@Component
+public class OnPremDataSource {
+
+    private static final String DEFAULT_LOCATION = "";
+
+    private final OnPremProperties properties;
+    private final Map<String, HikariDataSource> pools = new ConcurrentHashMap<>();
+    private final Map<String, HikariDataSource> exportPools = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public OnPremDataSource(OnPremProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns a connection to the Cloud Connector without a location ID.
+     */
+    public Connection getConnection() throws SQLException {
+        return getConnection(DEFAULT_LOCATION);
+    }
+
+    /**
+     * Returns a connection to the Cloud Connector registered with the given
+     * location ID; null or empty selects the connector without a location ID.
+     */
+    public Connection getConnection(String locationId) throws SQLException {
+        return getConnection(locationId, properties.getConnectionTimeout());
+    }
+
+    /**
+     * Like {@link #getConnection(String)}, but waits at most the given time for a
+     * free connection instead of {@code onprem.connection-timeout}.
+     */
+    public Connection getConnection(String locationId, long timeoutMillis) throws SQLException {
+        return borrow(pool(locationId != null ? locationId : DEFAULT_LOCATION), timeoutMillis);
+    }
+
+    /**
+     * Returns a connection for a streaming export from the export pool of the
+     * Cloud Connector without a location ID.
+     */
+    public Connection getExportConnection() throws SQLException {
+        if (closed) {
+            throw new IllegalStateException("On-prem data source is closed");
+        }
+        HikariDataSource dataSource = exportPools.computeIfAbsent(DEFAULT_LOCATION,
+                location -> new HikariDataSource(createConfig(location, "onprem-export",
+                        properties.getExportPoolSize())));
+        return borrow(dataSource, properties.getConnectionTimeout());
+    }
+
+    private Connection borrow(HikariDataSource dataSource, long timeoutMillis) throws SQLException {
+        PoolBorrowEvent event = PoolBorrowEvent.begin(dataSource.getPoolName());
+        boolean success = false;
+        try {
+            Connection connection = ((HikariPool) dataSource.getHikariPoolMXBean()).getConnection(timeoutMillis);
+            success = true;
+            return connection;
+        } finally {
+            event.finish(success);
+        }
+    }
+
+    private HikariDataSource pool(String locationId) {
+        if (closed) {
+            throw new IllegalStateException("On-prem data source is closed");
+        }
+        return pools.computeIfAbsent(locationId, location -> new HikariDataSource(createConfig(location,
+                location.isEmpty() ? "onprem" : "onprem-" + location, properties.getMaximumPoolSize())));
+    }
+
+    private HikariConfig createConfig(String locationId, String poolName, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setDriverClassName(SQLServerDriver.class.getName());
+        config.setJdbcUrl(properties.getUrl());
+        config.setUsername(properties.getUsername());
+        config.setPassword(properties.getPassword());
+        config.setMaximumPoolSize(poolSize);
+        config.setConnectionTimeout(properties.getConnectionTimeout());
+        config.setReadOnly(true);
+        config.addDataSourceProperty("socketFactoryClass", DummySocketFactory.class.getName());
+        if (!locationId.isEmpty()) {
+            config.addDataSourceProperty("socketFactoryConstructorArg", locationId);
+        }
+        return config;
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        for (HikariDataSource pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+        for (HikariDataSource pool : exportPools.values()) {
+            pool.close();
+        }
+        exportPools.clear();
+    }
+}
@@ -0,0 +1,135 @@
+package customer.capjdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sap.cds.ResultBuilder;
+import com.sap.cds.ql.cqn.CqnSelect;
+import com.sap.cds.services.ErrorStatuses;
+import com.sap.cds.services.ServiceException;
+import com.sap.cds.services.cds.CdsReadEventContext;
+import com.sap.cds.services.cds.CdsService;
+import com.sap.cds.services.handler.EventHandler;
+import com.sap.cds.services.handler.annotations.On;
+import com.sap.cds.services.handler.annotations.ServiceName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the entities of {@code OnPremService} from the on-prem SQL Server.
+ * Each entity is mapped to a table in {@code onprem.tables.<table>.entity};
+ * the OData query is translated by {@link CqnSqlServerTranslator}, so only the
+ * requested rows and columns cross the Cloud Connector.
+ */
+@Component
+@ServiceName("OnPremService")
+public class OnPremEntityHandler implements EventHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OnPremEntityHandler.class);
+
+    @Autowired
+    OnPremProperties properties;
+    @Autowired
+    OnPremDataSource onPremDataSource;
+
+    @On(event = CdsService.EVENT_READ)
+    public void read(CdsReadEventContext context) {
+        String entity = context.getTarget().getQualifiedName();
+        OnPremProperties.Table table = properties.findEntity(entity);
+        if (table == null) {
+            throw new ServiceException(ErrorStatuses.NOT_FOUND, "Entity {} is not mapped to an on-prem table", entity);
+        }
+        CqnSelect select = context.getCqn();
+        CqnSqlServerTranslator translator = new CqnSqlServerTranslator(table, context.getTarget(),
+                properties.getMaxPageSize());
+
+        try (Connection con = onPremDataSource.getConnection()) {
+            if (translator.isCountOnly(select)) {
+                Map<String, Object> row = new HashMap<>();
+                row.put(translator.countAlias(select), count(con, translator.count(select)));
+                List<Map<String, Object>> rows = new ArrayList<>();
+                rows.add(row);
+                context.setResult(ResultBuilder.selectedRows(rows).result());
+                return;
+            }
+
+            List<String[]> projection = translator.projection(select);
+            List<Map<String, Object>> rows = query(con, translator.select(select, projection), projection);
+            if (select.hasInlineCount()) {
+                long total = count(con, translator.count(select));
+                context.setResult(ResultBuilder.selectedRows(rows).inlineCount(total).result());
+            } else {
+                context.setResult(ResultBuilder.selectedRows(rows).result());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(ErrorStatuses.BAD_REQUEST, e.getMessage(), e);
+        } catch (SQLException e) {
+            LOGGER.error("Reading " + entity + " from " + table.getName() + " failed", e);
+            throw new ServiceException(ErrorStatuses.BAD_GATEWAY, "Reading {} failed", entity, e);
+        }
+    }
+
+    private List<Map<String, Object>> query(Connection con, CqnSqlServerTranslator.SqlStatement statement,
+            List<String[]> projection) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (PreparedStatement stmt = con.prepareStatement(statement.getSql())) {
+            stmt.setQueryTimeout(properties.getQueryTimeout());
+            statement.bind(stmt);
+            JdbcStatementEvent event = JdbcStatementEvent.begin(statement.getSql());
+            boolean success = false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> row = new HashMap<>();
+                    for (int i = 0; i < projection.size(); i++) {
+                        row.put(projection.get(i)[0], toCds(rs.getObject(i + 1)));
+                    }
+                    rows.add(row);
+                }
+                success = true;
+            } finally {
+                event.finish(rows.size(), success);
+            }
+        }
+        return rows;
+    }
+
+    private long count(Connection con, CqnSqlServerTranslator.SqlStatement statement) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(statement.getSql())) {
+            stmt.setQueryTimeout(properties.getQueryTimeout());
+            statement.bind(stmt);
+            JdbcStatementEvent event = JdbcStatementEvent.begin(statement.getSql());
+            boolean success = false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long count = rs.getLong(1);
+                success = true;
+                return count;
+            } finally {
+                event.finish(1, success);
+            }
+        }
+    }
+
+    private static Object toCds(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant();
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        if (value instanceof Time) {
+            return ((Time) value).toLocalTime();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,403 @@
+package customer.capjdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings for the on-prem SQL Server reached through the Cloud Connector,
+ * bound from the {@code onprem} section of application.yaml.
+ */
+@Component
+@ConfigurationProperties(prefix = "onprem")
+public class OnPremProperties {
+
+    private String url = "jdbc:sqlserver://testdb:1433;databaseName=LIFERAY_TEST";
+    private String username;
+    private String password;
+    private int maximumPoolSize = 4;
+    private long connectionTimeout = 30000;
+    private int queryTimeout = 30;
+    private int maxPageSize = 1000;
+    private int exportPoolSize = 2;
+    private Duration exportTimeout = Duration.ofMinutes(30);
+    private Map<String, Table> tables = new LinkedHashMap<>();
+    private List<String> locations = new ArrayList<>();
+    private Duration fanOutTimeout = Duration.ofSeconds(30);
+    private int fanOutMaxThreads = 32;
+    private Map<String, Query> queries = new LinkedHashMap<>();
+    private Duration lookupWindow = Duration.ofMillis(5);
+    private int lookupMaxBatchSize = 100;
+
+    /**
+     * Returns the configured table with the given name (case-insensitive), or null.
+     */
+    public Table findTable(String name) {
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                Table table = entry.getValue();
+                if (table.getName() == null) {
+                    table.setName(entry.getKey());
+                }
+                return table;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the table backing the given CDS entity, or null.
+     */
+    public Table findEntity(String qualifiedName) {
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            if (qualifiedName.equals(entry.getValue().getEntity())) {
+                return findTable(entry.getKey());
+            }
+        }
+        return null;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getExportPoolSize() {
+        return exportPoolSize;
+    }
+
+    public void setExportPoolSize(int exportPoolSize) {
+        this.exportPoolSize = exportPoolSize;
+    }
+
+    public Duration getExportTimeout() {
+        return exportTimeout;
+    }
+
+    public void setExportTimeout(Duration exportTimeout) {
+        this.exportTimeout = exportTimeout;
+    }
+
+    public Map<String, Table> getTables() {
+        return tables;
+    }
+
+    public void setTables(Map<String, Table> tables) {
+        this.tables = tables;
+    }
+
+    public List<String> getLocations() {
+        return locations;
+    }
+
+    public void setLocations(List<String> locations) {
+        this.locations = locations;
+    }
+
+    public Duration getFanOutTimeout() {
+        return fanOutTimeout;
+    }
+
+    public void setFanOutTimeout(Duration fanOutTimeout) {
+        this.fanOutTimeout = fanOutTimeout;
+    }
+
+    public int getFanOutMaxThreads() {
+        return fanOutMaxThreads;
+    }
+
+    public void setFanOutMaxThreads(int fanOutMaxThreads) {
+        this.fanOutMaxThreads = fanOutMaxThreads;
+    }
+
+    public Map<String, Query> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(Map<String, Query> queries) {
+        this.queries = queries;
+    }
+
+    public Duration getLookupWindow() {
+        return lookupWindow;
+    }
+
+    public void setLookupWindow(Duration lookupWindow) {
+        this.lookupWindow = lookupWindow;
+    }
+
+    public int getLookupMaxBatchSize() {
+        return lookupMaxBatchSize;
+    }
+
+    public void setLookupMaxBatchSize(int lookupMaxBatchSize) {
+        this.lookupMaxBatchSize = lookupMaxBatchSize;
+    }
+
+    public enum KeyType {
+        BIGINT, VARCHAR, NVARCHAR
+    }
+
+    /**
+     * A table that may be read through the REST API and, if {@code entity} is set,
+     * as that CDS entity. Only the key column and the listed columns can be
+     * selected; an empty column list allows any column.
+     */
+    public static class Table {
+
+        private String name;
+        private String key;
+        private KeyType keyType = KeyType.BIGINT;
+        private List<String> columns = new ArrayList<>();
+        private String entity;
+
+        /**
+         * Binds a key value given as text with the SQL type of the key column, so that
+         * SQL Server can seek on the key index instead of converting every row.
+         */
+        public void bindKey(PreparedStatement statement, int index, String value) throws SQLException {
+            switch (keyType) {
+                case BIGINT:
+                    statement.setLong(index, Long.parseLong(value));
+                    break;
+                case VARCHAR:
+                    statement.setObject(index, value, Types.VARCHAR);
+                    break;
+                default:
+                    statement.setString(index, value);
+                    break;
+            }
+        }
+
+        /**
+         * Returns the canonical text of a key value, so that a requested key and
+         * the key read back from the table compare equal. Text keys lose trailing
+         * spaces, which SQL Server ignores when comparing and pads CHAR columns
+         * with; case is left to the caller, and accents are not folded, so tables
+         * with accent-insensitive collations only match keys spelled as stored.
+         */
+        public String normalizeKey(String value) {
+            if (keyType == KeyType.BIGINT) {
+                return String.valueOf(Long.parseLong(value.trim()));
+            }
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return value.substring(0, end);
+        }
+
+        /**
+         * Resolves a requested column name against the allowed columns and returns
+         * its configured spelling, or null if the column may not be selected.
+         */
+        public String resolveColumn(String column) {
+            if (key.equalsIgnoreCase(column)) {
+                return key;
+            }
+            if (columns.isEmpty()) {
+                return SqlServerDialect.isIdentifier(column) ? column : null;
+            }
+            for (String allowed : columns) {
+                if (allowed.equalsIgnoreCase(column)) {
+                    return allowed;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Resolves a comma separated projection; the key column is always selected
+         * first. A null or empty projection selects the key and all listed columns.
+         */
+        public List<String> resolveProjection(String projection) {
+            List<String> selected = new ArrayList<>();
+            selected.add(key);
+            if (projection == null || projection.trim().isEmpty()) {
+                if (columns.isEmpty()) {
+                    throw new IllegalArgumentException("Table " + name + " requires a column projection");
+                }
+                for (String column : columns) {
+                    if (!selected.contains(column)) {
+                        selected.add(column);
+                    }
+                }
+                return selected;
+            }
+            for (String requested : projection.split(",")) {
+                String column = resolveColumn(requested.trim());
+                if (column == null) {
+                    throw new IllegalArgumentException("Column " + requested.trim() + " is not readable on " + name);
+                }
+                if (!selected.contains(column)) {
+                    selected.add(column);
+                }
+            }
+            return selected;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public KeyType getKeyType() {
+            return keyType;
+        }
+
+        public void setKeyType(KeyType keyType) {
+            this.keyType = keyType;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public void setColumns(List<String> columns) {
+            this.columns = columns;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public void setEntity(String entity) {
+            this.entity = entity;
+        }
+    }
+
+    public enum MergeMode {
+        /** Rows of all locations in the order the locations answer. */
+        CONCAT,
+        /** K-way merge of per-location results that are sorted by {@code orderBy}. */
+        ORDERED,
+        /** Rows with equal non-aggregate columns are combined into one. */
+        AGGREGATE
+    }
+
+    public enum Aggregate {
+        SUM, COUNT, MIN, MAX
+    }
+
+    /**
+     * A named parameterized query that can be fanned out to several locations.
+     */
+    public static class Query {
+
+        private String sql;
+        private MergeMode merge = MergeMode.CONCAT;
+        private String orderBy;
+        private boolean descending;
+        private Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+
+        public String getSql() {
+            return sql;
+        }
+
+        public void setSql(String sql) {
+            this.sql = sql;
+        }
+
+        public MergeMode getMerge() {
+            return merge;
+        }
+
+        public void setMerge(MergeMode merge) {
+            this.merge = merge;
+        }
+
+        public String getOrderBy() {
+            return orderBy;
+        }
+
+        public void setOrderBy(String orderBy) {
+            this.orderBy = orderBy;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        public void setDescending(boolean descending) {
+            this.descending = descending;
+        }
+
+        public Map<String, Aggregate> getAggregates() {
+            return aggregates;
+        }
+
+        public void setAggregates(Map<String, Aggregate> aggregates) {
+            this.aggregates = aggregates;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package customer.capjdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces concurrent single-row lookups by key into one
+ * {@code WHERE key IN (...)} query per table and projection. A batch is sent
+ * when {@code onprem.lookup-window} has passed since its first key or when it
+ * holds {@code onprem.lookup-max-batch-size} keys, whichever comes first, and
+ * the rows are handed back to the waiting callers. Concurrent lookups of the
+ * same key share one result.
+ *
+ * The IN list is padded to the next power of two by repeating the last key, so
+ * SQL Server sees a handful of statement shapes and reuses their plans.
+ *
+ * A single timer thread only closes the windows; the queries run on a separate
+ * pool sized to the connection pool, so slow batches cannot delay the flush of
+ * other tables. Each table keeps batches for its most recently used
+ * projections only, as projections come from clients.
+ */
+@Component
+public class PointLookupBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PointLookupBatcher.class);
+
+    /** SQL Server accepts at most 2100 parameters per statement. */
+    private static final int MAX_BATCH_SIZE = 2048;
+    private static final int MAX_PROJECTIONS_PER_TABLE = 16;
+
+    private final OnPremProperties properties;
+    private final OnPremDataSource onPremDataSource;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService executor;
+    private final Map<String, Map<List<String>, Batch>> batches = new ConcurrentHashMap<>();
+
+    public PointLookupBatcher(OnPremProperties properties, OnPremDataSource onPremDataSource) {
+        this.properties = properties;
+        this.onPremDataSource = onPremDataSource;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lookup-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getMaximumPoolSize(), runnable -> {
+            Thread thread = new Thread(runnable, "lookup-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks up the row with the given key. The future completes with null if the
+     * table has no such row.
+     *
+     * @param columns projection as returned by {@link OnPremProperties.Table#resolveProjection(String)},
+     *            starting with the key column
+     */
+    public CompletableFuture<Map<String, Object>> lookup(OnPremProperties.Table table, List<String> columns,
+            String key) {
+        String normalized = table.normalizeKey(key);
+        return batch(table, columns).add(normalized);
+    }
+
+    /**
+     * An evicted batch is still flushed by its timer, so no pending key is lost.
+     */
+    private Batch batch(OnPremProperties.Table table, List<String> columns) {
+        Map<List<String>, Batch> projections = batches.computeIfAbsent(table.getName(),
+                name -> new LinkedHashMap<List<String>, Batch>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<String>, Batch> eldest) {
+                        return size() > MAX_PROJECTIONS_PER_TABLE;
+                    }
+                });
+        synchronized (projections) {
+            Batch batch = projections.get(columns);
+            if (batch == null) {
+                batch = new Batch(table, new ArrayList<>(columns));
+                projections.put(batch.columns, batch);
+            }
+            return batch;
+        }
+    }
+
+    private final class Batch {
+        private final OnPremProperties.Table table;
+        private final List<String> columns;
+        private Map<String, CompletableFuture<Map<String, Object>>> pending;
+        private ScheduledFuture<?> window;
+
+        Batch(OnPremProperties.Table table, List<String> columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+
+        synchronized CompletableFuture<Map<String, Object>> add(String key) {
+            if (pending == null) {
+                pending = newKeyMap();
+                window = timer.schedule(this::flush, properties.getLookupWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+            CompletableFuture<Map<String, Object>> future = pending.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                pending.put(key, future);
+            }
+            if (pending.size() >= Math.min(properties.getLookupMaxBatchSize(), MAX_BATCH_SIZE)) {
+                Map<String, CompletableFuture<Map<String, Object>>> full = take();
+                executor.execute(() -> execute(full));
+            }
+            return future;
+        }
+
+        private synchronized Map<String, CompletableFuture<Map<String, Object>>> take() {
+            Map<String, CompletableFuture<Map<String, Object>>> taken = pending;
+            pending = null;
+            if (window != null) {
+                window.cancel(false);
+                window = null;
+            }
+            return taken;
+        }
+
+        private void flush() {
+            Map<String, CompletableFuture<Map<String, Object>>> taken = take();
+            if (taken != null) {
+                executor.execute(() -> execute(taken));
+            }
+        }
+
+        /**
+         * String keys are matched case-insensitively like SQL Server's default
+         * collations; both the requested keys and the keys of the returned rows
+         * go through {@link OnPremProperties.Table#normalizeKey(String)}.
+         */
+        private Map<String, CompletableFuture<Map<String, Object>>> newKeyMap() {
+            if (table.getKeyType() == OnPremProperties.KeyType.BIGINT) {
+                return new HashMap<>();
+            }
+            return new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        }
+
+        private void execute(Map<String, CompletableFuture<Map<String, Object>>> waiting) {
+            List<String> keys = new ArrayList<>(waiting.keySet());
+            int size = Integer.highestOneBit(keys.size());
+            if (size < keys.size()) {
+                size <<= 1;
+            }
+            StringBuilder sql = new StringBuilder("SELECT ").append(SqlServerDialect.columnList(columns))
+                    .append(" FROM ").append(SqlServerDialect.quote(table.getName()))
+                    .append(" WHERE ").append(SqlServerDialect.quote(table.getKey())).append(" IN (");
+            for (int i = 0; i < size; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+
+            int found = 0;
+            try (Connection con = onPremDataSource.getConnection();
+                    PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+                stmt.setQueryTimeout(properties.getQueryTimeout());
+                for (int i = 0; i < size; i++) {
+                    table.bindKey(stmt, i + 1, keys.get(Math.min(i, keys.size() - 1)));
+                }
+                JdbcStatementEvent event = JdbcStatementEvent.begin(sql.toString());
+                boolean success = false;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int i = 0; i < columns.size(); i++) {
+                            row.put(columns.get(i), rs.getObject(i + 1));
+                        }
+                        CompletableFuture<Map<String, Object>> future = waiting
+                                .get(table.normalizeKey(String.valueOf(row.get(table.getKey()))));
+                        if (future != null && future.complete(row)) {
+                            found++;
+                        }
+                    }
+                    success = true;
+                } finally {
+                    event.finish(found, success);
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.error("Lookup of " + keys.size() + " keys in " + table.getName() + " failed", e);
+                for (CompletableFuture<Map<String, Object>> future : waiting.values()) {
+                    future.completeExceptionally(e);
+                }
+                return;
+            }
+            for (CompletableFuture<Map<String, Object>> future : waiting.values()) {
+                future.complete(null);
+            }
+            LOGGER.debug("Resolved {} of {} keys in {} with one query", found, keys.size(), table.getName());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,42 @@
+package customer.capjdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Wait for a connection from the on-prem pool, recorded above the threshold.
+ */
+@Name("customer.capjdbc.PoolBorrow")
+@Label("On-Prem Pool Borrow")
+@Description("Wait for a pooled on-prem SQL Server connection")
+@Category({ "capjdbc", "JDBC" })
+@Threshold("10 ms")
+@StackTrace(false)
+public class PoolBorrowEvent extends Event {
+
+    @Label("Pool")
+    String pool;
+
+    @Label("Success")
+    boolean success;
+
+    static PoolBorrowEvent begin(String pool) {
+        PoolBorrowEvent event = new PoolBorrowEvent();
+        event.pool = pool;
+        event.begin();
+        return event;
+    }
+
+    void finish(boolean result) {
+        end();
+        if (shouldCommit()) {
+            success = result;
+            commit();
+        }
+    }
+}
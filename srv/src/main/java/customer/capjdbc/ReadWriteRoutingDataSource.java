@@ -0,0 +1,28 @@
+package customer.capjdbc;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out read-only connections to threads that marked themselves as
+ * read-only with {@link #markReadOnly()}, and writer connections to all others.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String READ = "read";
+    static final String WRITE = "write";
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+    public static void markReadOnly() {
+        READ_ONLY.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        READ_ONLY.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Boolean.TRUE.equals(READ_ONLY.get()) ? READ : WRITE;
+    }
+}
@@ -0,0 +1,65 @@
+package customer.capjdbc;
+
+import java.net.InetSocketAddress;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One phase of a SOCKS5 handshake with the connectivity proxy. A connect emits
+ * one event per phase, so a stall can be attributed to the TCP connect to the
+ * proxy, the greeting, the JWT authentication or the connect command.
+ */
+@Name("customer.capjdbc.Socks5Connect")
+@Label("SOCKS5 Connect Phase")
+@Description("Phase of a SOCKS5 handshake through the Cloud Connector")
+@Category({ "capjdbc", "Connectivity" })
+@StackTrace(false)
+public class Socks5ConnectEvent extends Event {
+
+    static final String PROXY_CONNECT = "PROXY_CONNECT";
+    static final String INITIAL_REQUEST = "INITIAL_REQUEST";
+    static final String AUTHENTICATION = "AUTHENTICATION";
+    static final String CONNECT_COMMAND = "CONNECT_COMMAND";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Target")
+    String target;
+
+    @Label("Location ID")
+    String locationId;
+
+    @Label("Status")
+    String status;
+
+    static Socks5ConnectEvent begin(String phase) {
+        Socks5ConnectEvent event = new Socks5ConnectEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends this phase successfully and begins the next one.
+     */
+    Socks5ConnectEvent next(String nextPhase, InetSocketAddress endpoint, String location) {
+        finish(endpoint, location, "OK");
+        return begin(nextPhase);
+    }
+
+    void finish(InetSocketAddress endpoint, String location, String result) {
+        end();
+        if (shouldCommit()) {
+            target = endpoint.getHostString() + ":" + endpoint.getPort();
+            locationId = location;
+            status = result;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package customer.capjdbc;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * T-SQL helpers for statements built against the on-prem SQL Server.
+ */
+public final class SqlServerDialect {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private SqlServerDialect() {
+    }
+
+    public static boolean isIdentifier(String name) {
+        return name != null && IDENTIFIER.matcher(name).matches();
+    }
+
+    /**
+     * Quotes a possibly schema-qualified name, e.g. {@code dbo.Merry_Device} becomes
+     * {@code [dbo].[Merry_Device]}.
+     */
+    public static String quote(String name) {
+        StringBuilder sql = new StringBuilder();
+        for (String part : name.split("\\.")) {
+            if (sql.length() > 0) {
+                sql.append('.');
+            }
+            sql.append('[').append(part.replace("]", "]]")).append(']');
+        }
+        return sql.toString();
+    }
+
+    public static String columnList(List<String> columns) {
+        StringBuilder sql = new StringBuilder();
+        for (String column : columns) {
+            if (sql.length() > 0) {
+                sql.append(", ");
+            }
+            sql.append(quote(column));
+        }
+        return sql.toString();
+    }
+}
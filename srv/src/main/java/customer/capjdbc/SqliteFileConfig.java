@@ -0,0 +1,166 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.StreamUtils;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * Persistence on a SQLite database file instead of the shared in-memory
+ * database, enabled with the {@code sqlite-file} profile.
+ *
+ * In WAL mode readers do not block the writer or each other, so reads get a
+ * pool of {@code query_only} connections sized to the cores, while all writes
+ * go through a single writer connection as SQLite allows only one writer.
+ * GET requests on {@code /odata/v4/**} are routed to the read pool.
+ *
+ * The generated {@code schema.sql} drops every table before creating it, so it
+ * is only run when the database file is new; Spring's own initialization is
+ * turned off in this profile. Tables or views added to the model later are not
+ * created in an existing file: a warning lists them, and they have to be
+ * created by hand, e.g. by running their {@code CREATE} statements from
+ * {@code schema.sql} with the sqlite3 shell, or the file is deleted to start
+ * over.
+ */
+@Configuration
+@Profile("sqlite-file")
+public class SqliteFileConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqliteFileConfig.class);
+
+    private static final String SCHEMA = "schema.sql";
+    private static final Pattern CREATE = Pattern.compile(
+            "\\bCREATE\\s+(?:TABLE|VIEW)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    private HikariDataSource writer;
+    private HikariDataSource reader;
+
+    @Bean
+    @Primary
+    DataSource dataSource(SqliteProperties properties) throws SQLException {
+        SQLiteDataSource sqlite = new SQLiteDataSource();
+        sqlite.setUrl("jdbc:sqlite:" + properties.getPath());
+
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("journal_mode=" + properties.getJournalMode());
+        pragmas.add("synchronous=" + properties.getSynchronous());
+        pragmas.add("mmap_size=" + properties.getMmapSize());
+        pragmas.add("cache_size=" + properties.getCacheSize());
+        pragmas.add("busy_timeout=" + properties.getBusyTimeout());
+
+        List<String> readPragmas = new ArrayList<>(pragmas);
+        readPragmas.add("query_only=ON");
+
+        int readPoolSize = properties.resolveReadPoolSize();
+        writer = createPool("sqlite-write", new SqlitePragmaDataSource(sqlite, pragmas), 1);
+        reader = createPool("sqlite-read", new SqlitePragmaDataSource(sqlite, readPragmas), readPoolSize);
+        initializeSchema(writer, new ClassPathResource(SCHEMA));
+        LOGGER.info("Using SQLite database {} with {} read connections", properties.getPath(), readPoolSize);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.WRITE, writer);
+        targets.put(ReadWriteRoutingDataSource.READ, reader);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(writer);
+        return routing;
+    }
+
+    static void initializeSchema(DataSource dataSource, Resource schema) throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            Set<String> existing = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            try (Statement stmt = con.createStatement();
+                    ResultSet rs = stmt.executeQuery(
+                            "SELECT name FROM sqlite_master WHERE type IN ('table', 'view')")) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+            if (existing.isEmpty()) {
+                LOGGER.info("Creating schema from {} in new SQLite database", schema.getFilename());
+                ScriptUtils.executeSqlScript(con, schema);
+                return;
+            }
+            List<String> missing = missingTables(schema, existing);
+            if (!missing.isEmpty()) {
+                LOGGER.warn("SQLite database lacks tables or views {} defined in {}; create them manually or delete "
+                        + "the database file to recreate it", missing, schema.getFilename());
+            }
+        }
+    }
+
+    static List<String> missingTables(Resource schema, Set<String> existing) throws SQLException {
+        String script;
+        try (InputStream in = schema.getInputStream()) {
+            script = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read " + schema.getFilename(), e);
+        }
+        List<String> missing = new ArrayList<>();
+        Matcher matcher = CREATE.matcher(script);
+        while (matcher.find()) {
+            if (!existing.contains(matcher.group(1))) {
+                missing.add(matcher.group(1));
+            }
+        }
+        return missing;
+    }
+
+    private HikariDataSource createPool(String name, DataSource source, int size) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setDataSource(source);
+        config.setMaximumPoolSize(size);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Closing the last connection checkpoints the WAL into the database file.
+     */
+    @PreDestroy
+    public void close() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadOnlyRoutingFilter> readOnlyRoutingFilter() {
+        FilterRegistrationBean<ReadOnlyRoutingFilter> registration = new FilterRegistrationBean<>(
+                new ReadOnlyRoutingFilter());
+        registration.addUrlPatterns("/odata/v4/*");
+        return registration;
+    }
+}
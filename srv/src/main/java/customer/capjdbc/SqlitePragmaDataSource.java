@@ -0,0 +1,47 @@
+package customer.capjdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Runs a list of {@code PRAGMA} statements on every connection it opens. Used
+ * as the source of a connection pool, so the pragmas run once per physical
+ * connection and work with any sqlite-jdbc version.
+ */
+public class SqlitePragmaDataSource extends DelegatingDataSource {
+
+    private final List<String> pragmas;
+
+    public SqlitePragmaDataSource(DataSource target, List<String> pragmas) {
+        super(target);
+        this.pragmas = pragmas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return applyPragmas(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return applyPragmas(super.getConnection(username, password));
+    }
+
+    private Connection applyPragmas(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute("PRAGMA " + pragma);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,83 @@
+package customer.capjdbc;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the file-backed SQLite database of the {@code sqlite-file} profile,
+ * bound from {@code sqlite}. The pragmas are applied to every new connection.
+ */
+@Component
+@ConfigurationProperties(prefix = "sqlite")
+public class SqliteProperties {
+
+    private String path = "capjdbc.db";
+    private String journalMode = "WAL";
+    private String synchronous = "NORMAL";
+    private long mmapSize = 256L * 1024 * 1024;
+    /** Negative values are KiB, positive values pages, as in SQLite. */
+    private int cacheSize = -64 * 1024;
+    private int busyTimeout = 5000;
+    /** Size of the read-only pool, 0 for the number of available processors. */
+    private int readPoolSize = 0;
+
+    public int resolveReadPoolSize() {
+        return readPoolSize > 0 ? readPoolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(String journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(String synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    public void setBusyTimeout(int busyTimeout) {
+        this.busyTimeout = busyTimeout;
+    }
+
+    public int getReadPoolSize() {
+        return readPoolSize;
+    }
+
+    public void setReadPoolSize(int readPoolSize) {
+        this.readPoolSize = readPoolSize;
+    }
+}
@@ -0,0 +1,214 @@
+package customer.capjdbc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Generic read access to the tables configured under {@code onprem.tables}.
+ *
+ * Pages are read by keyset ({@code WHERE key > ? ORDER BY key}) instead of OFFSET,
+ * so SQL Server seeks straight to the first row of every page and the last page
+ * costs the same as the first. The continuation token is the last key returned.
+ * Whole tables can be exported in the binary columnar format of
+ * {@link ColumnarExportWriter}. Single rows are looked up by key through the
+ * {@link PointLookupBatcher}, which sends concurrent lookups as one query.
+ */
+@RestController
+@RequestMapping(value = "/rest/tables")
+public class TableReadController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableReadController.class);
+    private static final int MAX_EXPORT_BATCH_SIZE = 65536;
+
+    @Autowired
+    OnPremProperties properties;
+    @Autowired
+    OnPremDataSource onPremDataSource;
+    @Autowired
+    PointLookupBatcher pointLookupBatcher;
+
+    @GetMapping(value = "/{table}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public KeysetPage read(@PathVariable String table,
+            @RequestParam(required = false) String columns,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String after) {
+
+        OnPremProperties.Table config = resolveTable(table);
+        List<String> selected = resolveProjection(config, columns);
+        if (limit < 1 || limit > properties.getMaxPageSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + properties.getMaxPageSize());
+        }
+        String afterKey = after != null ? decodeToken(after) : null;
+
+        String key = SqlServerDialect.quote(config.getKey());
+        StringBuilder sql = new StringBuilder("SELECT TOP (?) ")
+                .append(SqlServerDialect.columnList(selected))
+                .append(" FROM ").append(SqlServerDialect.quote(config.getName()));
+        if (afterKey != null) {
+            sql.append(" WHERE ").append(key).append(" > ?");
+        }
+        sql.append(" ORDER BY ").append(key);
+
+        KeysetPage page = new KeysetPage();
+        page.setColumns(selected);
+        try (Connection con = onPremDataSource.getConnection();
+                PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+            stmt.setQueryTimeout(properties.getQueryTimeout());
+            // one extra row tells whether another page exists without a further round trip
+            stmt.setInt(1, limit + 1);
+            if (afterKey != null) {
+                config.bindKey(stmt, 2, afterKey);
+            }
+            JdbcStatementEvent event = JdbcStatementEvent.begin(sql.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                int width = selected.size();
+                while (rs.next()) {
+                    if (page.getRows().size() == limit) {
+                        Object[] last = page.getRows().get(limit - 1);
+                        page.setNext(encodeToken(String.valueOf(last[0])));
+                        break;
+                    }
+                    Object[] row = new Object[width];
+                    for (int i = 0; i < width; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    page.getRows().add(row);
+                }
+                event.finish(page.getRows().size(), true);
+            } catch (SQLException e) {
+                event.finish(page.getRows().size(), false);
+                throw e;
+            }
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid continuation token", e);
+        } catch (SQLException e) {
+            LOGGER.error("Reading " + config.getName() + " failed", e);
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, e.getMessage(), e);
+        }
+        return page;
+    }
+
+    /**
+     * Answered asynchronously: the request waits for its batch without holding a
+     * servlet thread.
+     */
+    @GetMapping(value = "/{table}/rows/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<Map<String, Object>> lookup(@PathVariable String table, @PathVariable String key,
+            @RequestParam(required = false) String columns) {
+
+        OnPremProperties.Table config = resolveTable(table);
+        List<String> selected = resolveProjection(config, columns);
+        CompletableFuture<Map<String, Object>> future;
+        try {
+            future = pointLookupBatcher.lookup(config, selected, key);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid key " + key, e);
+        }
+
+        DeferredResult<Map<String, Object>> result = new DeferredResult<>(
+                TimeUnit.SECONDS.toMillis(properties.getQueryTimeout()));
+        result.onTimeout(() -> result.setErrorResult(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                "Lookup in " + config.getName() + " timed out")));
+        future.whenComplete((row, error) -> {
+            if (error != null) {
+                result.setErrorResult(new ResponseStatusException(HttpStatus.BAD_GATEWAY, error.getMessage(), error));
+            } else if (row == null) {
+                result.setErrorResult(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No row " + key + " in " + config.getName()));
+            } else {
+                result.setResult(row);
+            }
+        });
+        return result;
+    }
+
+    @GetMapping(value = "/{table}/export", produces = ColumnarExportWriter.CONTENT_TYPE)
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String table,
+            @RequestParam(required = false) String columns,
+            @RequestParam(defaultValue = "4096") int batchSize) {
+
+        OnPremProperties.Table config = resolveTable(table);
+        List<String> selected = resolveProjection(config, columns);
+        if (batchSize < 1 || batchSize > MAX_EXPORT_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "batchSize must be between 1 and " + MAX_EXPORT_BATCH_SIZE);
+        }
+        String sql = "SELECT " + SqlServerDialect.columnList(selected)
+                + " FROM " + SqlServerDialect.quote(config.getName());
+
+        StreamingResponseBody body = out -> {
+            try (Connection con = onPremDataSource.getExportConnection();
+                    PreparedStatement stmt = con.prepareStatement(sql)) {
+                stmt.setQueryTimeout((int) properties.getExportTimeout().getSeconds());
+                stmt.setFetchSize(batchSize);
+                JdbcStatementEvent event = JdbcStatementEvent.begin(sql);
+                long rows = -1;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rows = new ColumnarExportWriter(batchSize).write(rs, out);
+                    LOGGER.info("Exported {} rows of {}", rows, config.getName());
+                } finally {
+                    event.finish(rows, rows >= 0);
+                }
+            } catch (SQLException e) {
+                // the status line is already sent, the client sees a truncated stream
+                LOGGER.error("Exporting " + config.getName() + " failed", e);
+                throw new IOException(e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ColumnarExportWriter.CONTENT_TYPE))
+                .body(body);
+    }
+
+    OnPremProperties.Table resolveTable(String table) {
+        OnPremProperties.Table config = properties.findTable(table);
+        if (config == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown table " + table);
+        }
+        return config;
+    }
+
+    static List<String> resolveProjection(OnPremProperties.Table config, String columns) {
+        try {
+            return config.resolveProjection(columns);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    static String encodeToken(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid continuation token", e);
+        }
+    }
+}
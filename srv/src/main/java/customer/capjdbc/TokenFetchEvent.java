@@ -0,0 +1,44 @@
+package customer.capjdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Client credentials token fetch from XSUAA for the connectivity proxy.
+ */
+@Name("customer.capjdbc.TokenFetch")
+@Label("XSUAA Token Fetch")
+@Description("Client credentials token request to XSUAA")
+@Category({ "capjdbc", "Connectivity" })
+@StackTrace(false)
+public class TokenFetchEvent extends Event {
+
+    @Label("URL")
+    String url;
+
+    @Label("Client ID")
+    String clientId;
+
+    @Label("Success")
+    boolean success;
+
+    static TokenFetchEvent begin(String url, String clientId) {
+        TokenFetchEvent event = new TokenFetchEvent();
+        event.url = url;
+        event.clientId = clientId;
+        event.begin();
+        return event;
+    }
+
+    void finish(boolean result) {
+        end();
+        if (shouldCommit()) {
+            success = result;
+            commit();
+        }
+    }
+}
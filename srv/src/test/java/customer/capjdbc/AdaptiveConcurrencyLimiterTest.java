@@ -0,0 +1,82 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long THRESHOLD = TimeUnit.SECONDS.toNanos(2);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(3);
+
+    @Test
+    public void shedsRequestsOverTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, THRESHOLD, 0.9);
+
+        assertEquals(1, limiter.tryAcquire());
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(1, limiter.getShed());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+        assertEquals(2, limiter.tryAcquire());
+    }
+
+    @Test
+    public void growsOnlyWhenHalfTheLimitIsInUse() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, THRESHOLD, 0.9);
+
+        limiter.tryAcquire();
+        limiter.release(4, FAST, false);
+        assertEquals(10, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(5, FAST, false);
+        assertEquals(11, limiter.getLimit());
+    }
+
+    @Test
+    public void growthStopsAtTheMaximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(5, 1, 6, THRESHOLD, 0.9);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire();
+            limiter.release(5, FAST, false);
+        }
+
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void slowOrFailedRequestsBackOffDownToTheMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 3, 100, THRESHOLD, 0.5);
+
+        limiter.tryAcquire();
+        limiter.release(1, SLOW, false);
+        assertEquals(5, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(1, FAST, true);
+        assertEquals(3, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(1, SLOW, true);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void releaseWithoutSampleKeepsTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, THRESHOLD, 0.5);
+
+        limiter.tryAcquire();
+        limiter.release();
+
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,291 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+
+/**
+ * Writes mocked result sets and decodes the output against the layout
+ * documented on {@link ColumnarExportWriter}.
+ */
+public class ColumnarExportWriterTest {
+
+    private static final String[] LABELS = { "ID", "name", "qty", "price", "active", "created", "ratio", "data" };
+    private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.BIT,
+            Types.TIMESTAMP, Types.DOUBLE, Types.VARBINARY };
+    private static final byte[] EXPECTED_TYPES = { ColumnarExportWriter.INT64, ColumnarExportWriter.STRING,
+            ColumnarExportWriter.INT32, ColumnarExportWriter.DECIMAL, ColumnarExportWriter.BOOLEAN,
+            ColumnarExportWriter.TIMESTAMP, ColumnarExportWriter.FLOAT64, ColumnarExportWriter.BINARY };
+
+    /**
+     * Every fifth row is null in all columns but the key and the name, whose
+     * nulls are listed explicitly. With batches of four
+     * and a dictionary limit of two characters the names are appended twice,
+     * the batch of mostly new names is written plain and the last, partial
+     * batch resets the dictionary that the second batch overflowed.
+     */
+    private static final Object[][] ROWS = rows("a", null, "a", "b", "c", "a", "c", "c", "x", "y", "z", null,
+            "a", "a");
+
+    private static Object[][] rows(String... names) {
+        Object[][] rows = new Object[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            boolean nulls = i % 5 == 1;
+            rows[i] = new Object[] { i + 1L, names[i], nulls ? null : i * 3 - 7,
+                    nulls ? null : BigDecimal.valueOf(i * 125 - 300, 2), nulls ? null : i % 2 == 0,
+                    nulls ? null : new Timestamp(1600000000000L + i * 3600123L), nulls ? null : i * 0.25 - 1,
+                    nulls ? null : Arrays.copyOf(new byte[] { 9, 8 }, i % 3) };
+        }
+        return rows;
+    }
+
+    @Test
+    public void roundTripWithNullsDictionaryModesAndPartialLastBatch() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = new ColumnarExportWriter(4, 2).write(resultSet(ROWS), out);
+
+        Decoded decoded = decode(out.toByteArray());
+        assertEquals(ROWS.length, written);
+        assertEquals(Arrays.asList(LABELS), decoded.labels);
+        assertArrayEquals(EXPECTED_TYPES, decoded.types);
+        assertEquals(2, decoded.scales[3]);
+        assertEquals(Arrays.asList(4, 4, 4, 2), decoded.batchSizes);
+        assertEquals(Arrays.asList(ColumnarExportWriter.DICTIONARY_APPEND, ColumnarExportWriter.DICTIONARY_APPEND,
+                ColumnarExportWriter.PLAIN, ColumnarExportWriter.DICTIONARY_RESET), decoded.stringModes);
+        assertEquals(ROWS.length, decoded.rows.size());
+        for (int r = 0; r < ROWS.length; r++) {
+            for (int c = 0; c < LABELS.length; c++) {
+                String cell = LABELS[c] + " of row " + r;
+                if (ROWS[r][c] instanceof byte[]) {
+                    assertArrayEquals(cell, (byte[]) ROWS[r][c], (byte[]) decoded.rows.get(r)[c]);
+                } else {
+                    assertEquals(cell, ROWS[r][c], decoded.rows.get(r)[c]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void uniqueStringsAreWrittenPlain() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new ColumnarExportWriter(4).write(resultSet(rows("p", null, "r", "s", "t", "u")), out);
+
+        Decoded decoded = decode(out.toByteArray());
+        assertEquals(Arrays.asList(ColumnarExportWriter.PLAIN, ColumnarExportWriter.PLAIN), decoded.stringModes);
+        assertEquals("t", decoded.rows.get(4)[1]);
+        assertEquals(null, decoded.rows.get(1)[1]);
+    }
+
+    @Test
+    public void emptyResultHasSchemaAndEndMarker() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = new ColumnarExportWriter(4096).write(resultSet(new Object[0][]), out);
+
+        Decoded decoded = decode(out.toByteArray());
+        assertEquals(0, written);
+        assertEquals(Arrays.asList(LABELS), decoded.labels);
+        assertEquals(0, decoded.batchSizes.size());
+    }
+
+    private static ResultSet resultSet(Object[][] rows) throws SQLException {
+        ResultSetMetaData meta = mock(ResultSetMetaData.class);
+        when(meta.getColumnCount()).thenReturn(LABELS.length);
+        for (int i = 0; i < LABELS.length; i++) {
+            when(meta.getColumnLabel(i + 1)).thenReturn(LABELS[i]);
+            when(meta.getColumnType(i + 1)).thenReturn(TYPES[i]);
+        }
+        when(meta.getPrecision(4)).thenReturn(10);
+        when(meta.getScale(4)).thenReturn(2);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(meta);
+        int[] cursor = { -1 };
+        boolean[] wasNull = { false };
+        Function<InvocationOnMock, Object> value = invocation -> {
+            Object cell = rows[cursor[0]][invocation.<Integer>getArgument(0) - 1];
+            wasNull[0] = cell == null;
+            return cell;
+        };
+        when(rs.next()).thenAnswer(invocation -> ++cursor[0] < rows.length);
+        when(rs.wasNull()).thenAnswer(invocation -> wasNull[0]);
+        when(rs.getInt(anyInt())).thenAnswer(invocation -> {
+            Object cell = value.apply(invocation);
+            return cell != null ? ((Number) cell).intValue() : 0;
+        });
+        when(rs.getLong(anyInt())).thenAnswer(invocation -> {
+            Object cell = value.apply(invocation);
+            return cell != null ? ((Number) cell).longValue() : 0L;
+        });
+        when(rs.getDouble(anyInt())).thenAnswer(invocation -> {
+            Object cell = value.apply(invocation);
+            return cell != null ? ((Number) cell).doubleValue() : 0.0;
+        });
+        when(rs.getBoolean(anyInt())).thenAnswer(invocation -> Boolean.TRUE.equals(value.apply(invocation)));
+        when(rs.getString(anyInt())).thenAnswer(value::apply);
+        when(rs.getBigDecimal(anyInt())).thenAnswer(value::apply);
+        when(rs.getTimestamp(anyInt())).thenAnswer(value::apply);
+        when(rs.getBytes(anyInt())).thenAnswer(value::apply);
+        return rs;
+    }
+
+    private static final class Decoded {
+        final List<String> labels = new ArrayList<>();
+        byte[] types;
+        byte[] scales;
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<Byte> stringModes = new ArrayList<>();
+        final List<Object[]> rows = new ArrayList<>();
+    }
+
+    private static Decoded decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        assertArrayEquals("CJC1".getBytes(StandardCharsets.US_ASCII), magic);
+
+        Decoded decoded = new Decoded();
+        int columnCount = in.readInt();
+        decoded.types = new byte[columnCount];
+        decoded.scales = new byte[columnCount];
+        List<List<String>> dictionaries = new ArrayList<>();
+        for (int c = 0; c < columnCount; c++) {
+            decoded.labels.add(in.readUTF());
+            decoded.types[c] = in.readByte();
+            decoded.scales[c] = in.readByte();
+            dictionaries.add(new ArrayList<>());
+        }
+
+        int rowCount;
+        while ((rowCount = in.readInt()) > 0) {
+            decoded.batchSizes.add(rowCount);
+            Object[][] batch = new Object[rowCount][columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                byte[] validity = new byte[(rowCount + 7) >>> 3];
+                in.readFully(validity);
+                Object[] values = readValues(in, decoded.types[c], decoded.scales[c], rowCount, dictionaries.get(c),
+                        decoded);
+                for (int r = 0; r < rowCount; r++) {
+                    batch[r][c] = isSet(validity, r) ? values[r] : null;
+                }
+            }
+            decoded.rows.addAll(Arrays.asList(batch));
+        }
+        assertEquals("no bytes after the end marker", -1, in.read());
+        return decoded;
+    }
+
+    private static Object[] readValues(DataInputStream in, byte type, int scale, int rows, List<String> dictionary,
+            Decoded decoded) throws IOException {
+        Object[] values = new Object[rows];
+        switch (type) {
+            case ColumnarExportWriter.INT32:
+                for (int r = 0; r < rows; r++) {
+                    values[r] = in.readInt();
+                }
+                break;
+            case ColumnarExportWriter.INT64:
+                for (int r = 0; r < rows; r++) {
+                    values[r] = in.readLong();
+                }
+                break;
+            case ColumnarExportWriter.TIMESTAMP:
+                for (int r = 0; r < rows; r++) {
+                    values[r] = new Timestamp(in.readLong());
+                }
+                break;
+            case ColumnarExportWriter.DECIMAL:
+                for (int r = 0; r < rows; r++) {
+                    values[r] = BigDecimal.valueOf(in.readLong(), scale);
+                }
+                break;
+            case ColumnarExportWriter.FLOAT64:
+                for (int r = 0; r < rows; r++) {
+                    values[r] = in.readDouble();
+                }
+                break;
+            case ColumnarExportWriter.BOOLEAN:
+                byte[] bits = new byte[(rows + 7) >>> 3];
+                in.readFully(bits);
+                for (int r = 0; r < rows; r++) {
+                    values[r] = isSet(bits, r);
+                }
+                break;
+            case ColumnarExportWriter.STRING:
+                byte mode = in.readByte();
+                decoded.stringModes.add(mode);
+                if (mode == ColumnarExportWriter.PLAIN) {
+                    return readPlain(in, rows, values);
+                }
+                if (mode == ColumnarExportWriter.DICTIONARY_RESET) {
+                    dictionary.clear();
+                }
+                int entries = in.readInt();
+                for (int e = 0; e < entries; e++) {
+                    byte[] entry = new byte[in.readInt()];
+                    in.readFully(entry);
+                    dictionary.add(new String(entry, StandardCharsets.UTF_8));
+                }
+                for (int r = 0; r < rows; r++) {
+                    int index = in.readInt();
+                    // null slots hold index 0, which may not exist yet
+                    values[r] = index < dictionary.size() ? dictionary.get(index) : null;
+                }
+                break;
+            case ColumnarExportWriter.BINARY:
+                int[] lengths = new int[rows];
+                for (int r = 0; r < rows; r++) {
+                    lengths[r] = in.readInt();
+                }
+                for (int r = 0; r < rows; r++) {
+                    byte[] value = new byte[lengths[r]];
+                    in.readFully(value);
+                    values[r] = value;
+                }
+                break;
+            default:
+                throw new AssertionError("Unknown column type " + type);
+        }
+        return values;
+    }
+
+    private static Object[] readPlain(DataInputStream in, int rows, Object[] values) throws IOException {
+        int[] lengths = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            lengths[r] = in.readInt();
+        }
+        for (int r = 0; r < rows; r++) {
+            byte[] value = new byte[lengths[r]];
+            in.readFully(value);
+            values[r] = new String(value, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static boolean isSet(byte[] bitmap, int row) {
+        return (bitmap[row >>> 3] & (1 << (row & 7))) != 0;
+    }
+}
@@ -0,0 +1,94 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ConcurrencyLimitFilterTest {
+
+    private ConcurrencyLimitProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new ConcurrencyLimitProperties();
+        properties.setGroups(Arrays.asList("tables", "fanout", "lookups"));
+        properties.getPaths().put("lookups", "/rest/tables/*/rows/*");
+        // not a configured group, so it must not take effect
+        properties.getPaths().put("exports", "/rest/tables/*/export");
+    }
+
+    private ConcurrencyLimitFilter filter() {
+        return new ConcurrencyLimitFilter(properties, new SimpleMeterRegistry());
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    @Test
+    public void groupIsTheFirstSegmentAfterRest() {
+        ConcurrencyLimitFilter filter = filter();
+
+        assertEquals("tables", filter.resolveGroup(get("/rest/tables/Merry_Device")));
+        assertEquals("tables", filter.resolveGroup(get("/rest/tables")));
+        assertEquals("fanout", filter.resolveGroup(get("/rest/fanout/device-count")));
+    }
+
+    @Test
+    public void pathPatternWinsOverFirstSegment() {
+        ConcurrencyLimitFilter filter = filter();
+
+        assertEquals("lookups", filter.resolveGroup(get("/rest/tables/Merry_Device/rows/42")));
+        assertEquals("tables", filter.resolveGroup(get("/rest/tables/Merry_Device/rows")));
+    }
+
+    @Test
+    public void patternsOfUnlistedGroupsAreIgnored() {
+        assertEquals("tables", filter().resolveGroup(get("/rest/tables/Merry_Device/export")));
+    }
+
+    @Test
+    public void unknownPathsShareTheDefaultGroup() {
+        ConcurrencyLimitFilter filter = filter();
+
+        assertEquals(ConcurrencyLimitFilter.DEFAULT_GROUP, filter.resolveGroup(get("/rest/other/1")));
+        assertEquals(ConcurrencyLimitFilter.DEFAULT_GROUP, filter.resolveGroup(get("/rest/")));
+        assertEquals(ConcurrencyLimitFilter.DEFAULT_GROUP, filter.resolveGroup(get("/odata/v4/OnPremService")));
+    }
+
+    @Test
+    public void contextPathIsStripped() {
+        MockHttpServletRequest request = get("/app/rest/fanout/device-count");
+        request.setContextPath("/app");
+
+        assertEquals("fanout", filter().resolveGroup(request));
+    }
+
+    @Test
+    public void requestsOverTheLimitGet503WithRetryAfter() throws Exception {
+        properties.setInitialLimit(1);
+        properties.setMinLimit(1);
+        ConcurrencyLimitFilter filter = filter();
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+
+        // the second request arrives while the first still holds the only slot
+        filter.doFilter(get("/rest/tables/a"), accepted, (request, response) -> filter.doFilter(
+                get("/rest/tables/b"), rejected, new MockFilterChain()));
+        MockHttpServletResponse other = new MockHttpServletResponse();
+        filter.doFilter(get("/rest/fanout/q"), other, new MockFilterChain());
+
+        assertEquals(200, accepted.getStatus());
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(200, other.getStatus());
+    }
+}
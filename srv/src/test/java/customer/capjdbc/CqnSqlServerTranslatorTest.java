@@ -0,0 +1,228 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sap.cds.ql.CQL;
+import com.sap.cds.ql.Select;
+import com.sap.cds.ql.cqn.CqnSelect;
+import com.sap.cds.reflect.CdsElement;
+import com.sap.cds.reflect.CdsStructuredType;
+import com.sap.cds.reflect.CdsType;
+import com.sap.cds.services.ServiceException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CqnSqlServerTranslatorTest {
+
+    private static final String DEVICES = "OnPremService.Devices";
+    private static final String FIRST_PAGE = " ORDER BY [ID] OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    private static final long MAX_ROWS = 1000;
+
+    private OnPremProperties.Table table;
+    private CqnSqlServerTranslator translator;
+
+    @Before
+    public void setUp() {
+        table = new OnPremProperties.Table();
+        table.setName("Merry_Device");
+        table.setKey("ID");
+        CdsStructuredType target = mock(CdsStructuredType.class);
+        when(target.elements()).thenAnswer(invocation -> Stream.of(element("ID", false), element("name", false),
+                element("location", false), element("owner", true)));
+        translator = new CqnSqlServerTranslator(table, target, MAX_ROWS);
+    }
+
+    private static CdsElement element(String name, boolean association) {
+        CdsType type = mock(CdsType.class);
+        when(type.isAssociation()).thenReturn(association);
+        CdsElement element = mock(CdsElement.class);
+        when(element.getName()).thenReturn(name);
+        when(element.getType()).thenReturn(type);
+        return element;
+    }
+
+    private CqnSqlServerTranslator.SqlStatement select(CqnSelect select) {
+        return translator.select(select, translator.projection(select));
+    }
+
+    @Test
+    public void selectWithoutElementsReadsAllElementsButAssociations() {
+        CqnSqlServerTranslator.SqlStatement statement = select(Select.from(DEVICES));
+
+        assertEquals("SELECT [ID], [name], [location] FROM [Merry_Device]" + FIRST_PAGE, statement.getSql());
+        assertEquals(Arrays.<Object>asList(0L, MAX_ROWS), statement.getParameters());
+    }
+
+    @Test
+    public void projectionKeepsSelectedElements() {
+        CqnSelect select = Select.from(DEVICES).columns("location", "ID");
+
+        List<String> elements = translator.projection(select).stream().map(pair -> pair[0])
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("location", "ID"), elements);
+    }
+
+    @Test
+    public void comparisonsAreParameterized() {
+        CqnSelect select = Select.from(DEVICES)
+                .where(d -> d.get("name").eq("Robert'); DROP TABLE x;--").and(d.get("ID").gt(5)));
+
+        CqnSqlServerTranslator.SqlStatement statement = select(select);
+
+        assertEquals("SELECT [ID], [name], [location] FROM [Merry_Device] WHERE ([name] = ? AND [ID] > ?)"
+                + FIRST_PAGE, statement.getSql());
+        assertEquals(Arrays.<Object>asList("Robert'); DROP TABLE x;--", 5, 0L, MAX_ROWS), statement.getParameters());
+    }
+
+    @Test
+    public void nullTestsUseIs() {
+        CqnSelect isNull = Select.from(DEVICES).where(d -> d.get("name").isNull());
+        CqnSelect isNotNull = Select.from(DEVICES).where(d -> d.get("location").isNotNull());
+
+        assertTrue(select(isNull).getSql().endsWith(" WHERE [name] IS NULL" + FIRST_PAGE));
+        assertTrue(select(isNotNull).getSql().endsWith(" WHERE [location] IS NOT NULL" + FIRST_PAGE));
+        assertEquals(Arrays.<Object>asList(0L, MAX_ROWS), select(isNull).getParameters());
+    }
+
+    @Test
+    public void likePatternsAreEscaped() {
+        CqnSelect select = Select.from(DEVICES).where(
+                CQL.booleanFunc("contains", Arrays.asList(CQL.get("name"), CQL.val("50%_off [1]\\"))));
+
+        CqnSqlServerTranslator.SqlStatement statement = select(select);
+
+        assertTrue(statement.getSql().endsWith(" WHERE [name] LIKE ? ESCAPE '\\'" + FIRST_PAGE));
+        assertEquals("%50\\%\\_off \\[1]\\\\%", statement.getParameters().get(0));
+    }
+
+    @Test
+    public void startsWithOnlyAppendsWildcard() {
+        CqnSelect select = Select.from(DEVICES).where(
+                CQL.booleanFunc("startswith", Arrays.asList(CQL.get("name"), CQL.val("abc"))));
+
+        assertEquals("abc%", select(select).getParameters().get(0));
+    }
+
+    @Test
+    public void pagingWithoutOrderByOrdersByKey() {
+        CqnSelect select = Select.from(DEVICES).columns("name").limit(10, 20);
+
+        CqnSqlServerTranslator.SqlStatement statement = select(select);
+
+        assertEquals("SELECT [name] FROM [Merry_Device] ORDER BY [ID] OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                statement.getSql());
+        assertEquals(Arrays.<Object>asList(20L, 10L), statement.getParameters());
+    }
+
+    @Test
+    public void topIsCappedAtTheMaximum() {
+        CqnSelect select = Select.from(DEVICES).columns("name").limit(MAX_ROWS + 1, 5);
+
+        assertEquals(Arrays.<Object>asList(5L, MAX_ROWS), select(select).getParameters());
+    }
+
+    @Test
+    public void pagingKeepsRequestedOrder() {
+        CqnSelect select = Select.from(DEVICES).columns("name").orderBy(d -> d.get("name").desc()).limit(5, 0);
+
+        assertEquals("SELECT [name] FROM [Merry_Device] ORDER BY [name] DESC OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                select(select).getSql());
+    }
+
+    @Test
+    public void countOnlySelectCountsFilteredRows() {
+        CqnSelect select = Select.from(DEVICES).columns(d -> CQL.count().as("count"))
+                .where(d -> d.get("location").eq("Plant 1"));
+
+        assertTrue(translator.isCountOnly(select));
+        assertEquals("count", translator.countAlias(select));
+        assertTrue(translator.projection(select).isEmpty());
+        CqnSqlServerTranslator.SqlStatement count = translator.count(select);
+        assertEquals("SELECT COUNT_BIG(*) FROM [Merry_Device] WHERE [location] = ?", count.getSql());
+        assertEquals(Collections.<Object>singletonList("Plant 1"), count.getParameters());
+    }
+
+    @Test
+    public void inlineCountIgnoresPaging() {
+        CqnSelect select = Select.from(DEVICES).where(d -> d.get("ID").le(100)).limit(10, 30).inlineCount();
+
+        assertFalse(translator.isCountOnly(select));
+        assertEquals("SELECT COUNT_BIG(*) FROM [Merry_Device] WHERE [ID] <= ?", translator.count(select).getSql());
+    }
+
+    @Test
+    public void selectWithoutElementsSkipsUnlistedColumns() {
+        table.setColumns(Arrays.asList("name"));
+
+        assertEquals("SELECT [ID], [name] FROM [Merry_Device]" + FIRST_PAGE, select(Select.from(DEVICES)).getSql());
+    }
+
+    @Test
+    public void keyAccessFilterIsCombinedWithWhere() {
+        CqnSelect select = Select.from(CQL.entity(DEVICES).filter(CQL.get("ID").eq(42)))
+                .where(d -> d.get("name").eq("pump"));
+
+        CqnSqlServerTranslator.SqlStatement statement = select(select);
+
+        assertEquals("SELECT [ID], [name], [location] FROM [Merry_Device] WHERE [ID] = ? AND [name] = ?"
+                + FIRST_PAGE, statement.getSql());
+        assertEquals(Arrays.<Object>asList(42, "pump", 0L, MAX_ROWS), statement.getParameters());
+        assertEquals("SELECT COUNT_BIG(*) FROM [Merry_Device] WHERE [ID] = ? AND [name] = ?",
+                translator.count(select).getSql());
+    }
+
+    @Test
+    public void byIdAndMatchingAreTranslated() {
+        CqnSqlServerTranslator.SqlStatement byId = select(Select.from(DEVICES).byId(42));
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", "pump");
+        values.put("location", "Plant 1");
+        CqnSqlServerTranslator.SqlStatement matching = select(Select.from(DEVICES).matching(values));
+
+        assertTrue(byId.getSql().contains(" WHERE ") && byId.getSql().contains("[ID] = ?"));
+        assertTrue(byId.getParameters().contains(42));
+        assertTrue(matching.getSql().contains("[name] = ?") && matching.getSql().contains("[location] = ?"));
+        assertTrue(matching.getParameters().containsAll(values.values()));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void navigationPathsAreRejected() {
+        select(Select.from(CQL.entity(DEVICES).filter(CQL.get("ID").eq(42)).to("owner")));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void searchIsRejected() {
+        select(Select.from(DEVICES).search("pump"));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void groupByIsRejected() {
+        select(Select.from(DEVICES).columns("location").groupBy("location"));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void distinctIsRejected() {
+        select(Select.from(DEVICES).columns("location").distinct());
+    }
+
+    @Test(expected = ServiceException.class)
+    public void unlistedColumnsAreRejected() {
+        table.setColumns(Arrays.asList("name"));
+
+        select(Select.from(DEVICES).where(d -> d.get("location").eq("x")));
+    }
+}
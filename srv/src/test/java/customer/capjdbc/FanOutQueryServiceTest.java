@@ -0,0 +1,175 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class FanOutQueryServiceTest {
+
+    private static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    private static FanOutQueryService.RowSource source(Object... keys) {
+        Iterator<Object> rows = Arrays.asList(keys).iterator();
+        return () -> rows.hasNext() ? row("k", rows.next()) : null;
+    }
+
+    private static List<Object> merge(boolean descending, FanOutQueryService.RowSource... sources)
+            throws Exception {
+        List<Object> keys = new ArrayList<>();
+        new FanOutQueryService.OrderedMerger("k", descending).merge(Arrays.asList(sources),
+                row -> keys.add(row.get("k")));
+        return keys;
+    }
+
+    @Test
+    public void orderedMergeInterleavesSortedLocations() throws Exception {
+        List<Object> keys = merge(false, source(1, 4, 7, 8), source(), source(2, 3, 9), source(5L, 6));
+
+        assertEquals(Arrays.<Object>asList(1, 2, 3, 4, 5L, 6, 7, 8, 9), keys);
+    }
+
+    @Test
+    public void orderedMergeDescending() throws Exception {
+        List<Object> keys = merge(true, source("c", "a"), source("d", "b", null));
+
+        assertEquals(Arrays.<Object>asList("d", "c", "b", "a", null), keys);
+    }
+
+    @Test
+    public void sumAndCountAddAcrossNumberTypes() {
+        Map<String, OnPremProperties.Aggregate> aggregates = new LinkedHashMap<>();
+        aggregates.put("total", OnPremProperties.Aggregate.SUM);
+        aggregates.put("n", OnPremProperties.Aggregate.COUNT);
+        FanOutQueryService.AggregateMerger merger = new FanOutQueryService.AggregateMerger(aggregates);
+
+        merger.add(row("total", 3, "n", 2));
+        merger.add(row("total", 4L, "n", Integer.MAX_VALUE));
+        merger.add(row("total", new BigDecimal("0.25"), "n", 1L));
+
+        assertEquals(1, merger.result().size());
+        assertEquals(new BigDecimal("7.25"), merger.result().get(0).get("total"));
+        assertEquals(Integer.MAX_VALUE + 3L, merger.result().get(0).get("n"));
+    }
+
+    @Test
+    public void minAndMaxSkipNulls() {
+        Map<String, OnPremProperties.Aggregate> aggregates = new LinkedHashMap<>();
+        aggregates.put("low", OnPremProperties.Aggregate.MIN);
+        aggregates.put("high", OnPremProperties.Aggregate.MAX);
+        FanOutQueryService.AggregateMerger merger = new FanOutQueryService.AggregateMerger(aggregates);
+
+        merger.add(row("low", null, "high", null));
+        merger.add(row("low", 5, "high", 5));
+        merger.add(row("low", 2L, "high", new BigDecimal("7.5")));
+        merger.add(row("low", null, "high", null));
+
+        assertEquals(row("low", 2L, "high", new BigDecimal("7.5")), merger.result().get(0));
+    }
+
+    @Test
+    public void rowsAreGroupedByTheNonAggregateColumns() {
+        FanOutQueryService.AggregateMerger merger = new FanOutQueryService.AggregateMerger(
+                Collections.singletonMap("devices", OnPremProperties.Aggregate.COUNT));
+
+        merger.add(row("type", "pump", "state", "ok", "devices", 2));
+        merger.add(row("type", "pump", "state", "broken", "devices", 1));
+        merger.add(row("type", "valve", "state", "ok", "devices", 4));
+        merger.add(row("type", "pump", "state", "ok", "devices", 3));
+        merger.add(row("type", null, "state", "ok", "devices", 1));
+
+        assertEquals(Arrays.asList(row("type", "pump", "state", "ok", "devices", 5L),
+                row("type", "pump", "state", "broken", "devices", 1),
+                row("type", "valve", "state", "ok", "devices", 4),
+                row("type", null, "state", "ok", "devices", 1)), merger.result());
+    }
+
+    @Test
+    public void compareValuesOrdersNullsFirstAndNumbersByValue() {
+        assertEquals(0, FanOutQueryService.compareValues(null, null));
+        assertTrue(FanOutQueryService.compareValues(null, 1) < 0);
+        assertTrue(FanOutQueryService.compareValues("a", null) > 0);
+        assertEquals(0, FanOutQueryService.compareValues(2, 2L));
+        assertEquals(0, FanOutQueryService.compareValues(new BigDecimal("2.0"), 2));
+        assertTrue(FanOutQueryService.compareValues(3L, new BigDecimal("2.99")) > 0);
+        assertTrue(FanOutQueryService.compareValues(1.5, 2) < 0);
+        assertTrue(FanOutQueryService.compareValues("b", "a") > 0);
+    }
+
+    @Test
+    public void rowsOfAnsweringLocationsAreStreamedAndFailuresReported() throws Exception {
+        OnPremProperties properties = new OnPremProperties();
+        properties.setFanOutMaxThreads(2);
+        OnPremDataSource dataSource = mock(OnPremDataSource.class);
+        Connection plant1 = connection(1, 3);
+        when(dataSource.getConnection(eq("plant1"), anyLong())).thenReturn(plant1);
+        Connection plant2 = mock(Connection.class);
+        when(plant2.prepareStatement(anyString())).thenThrow(new SQLException("Login failed"));
+        when(dataSource.getConnection(eq("plant2"), anyLong())).thenReturn(plant2);
+        OnPremProperties.Query query = new OnPremProperties.Query();
+        query.setSql("SELECT k FROM t");
+        FanOutQueryService service = new FanOutQueryService(properties, dataSource);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<FanOutResult.LocationStatus> statuses;
+        try {
+            statuses = service.execute(query, Arrays.asList("plant1", "plant2"), Collections.emptyList(),
+                    Duration.ofSeconds(10), rows::add);
+        } finally {
+            service.shutdown();
+        }
+
+        assertEquals(Arrays.<Object>asList(1, 3),
+                rows.stream().map(row -> row.get("k")).collect(Collectors.toList()));
+        assertEquals(FanOutResult.Status.OK, statuses.get(0).getStatus());
+        assertEquals(2, statuses.get(0).getRows());
+        assertEquals(FanOutResult.Status.ERROR, statuses.get(1).getStatus());
+        assertEquals("Login failed", statuses.get(1).getMessage());
+        assertFalse(new FanOutResult(statuses).isComplete());
+    }
+
+    private static Connection connection(Object... keys) throws SQLException {
+        ResultSetMetaData meta = mock(ResultSetMetaData.class);
+        when(meta.getColumnCount()).thenReturn(1);
+        when(meta.getColumnLabel(1)).thenReturn("k");
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(meta);
+        int[] cursor = { -1 };
+        when(rs.next()).thenAnswer(invocation -> ++cursor[0] < keys.length);
+        when(rs.getObject(anyInt())).thenAnswer(invocation -> keys[cursor[0]]);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(stmt.executeQuery()).thenReturn(rs);
+        Connection con = mock(Connection.class);
+        when(con.prepareStatement(anyString())).thenReturn(stmt);
+        return con;
+    }
+}
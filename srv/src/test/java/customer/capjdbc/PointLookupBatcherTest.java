@@ -0,0 +1,167 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PointLookupBatcherTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("ID", "name");
+
+    private OnPremProperties properties;
+    private OnPremProperties.Table table;
+    private OnPremDataSource dataSource;
+    private Connection connection;
+    private PreparedStatement statement;
+    private PointLookupBatcher batcher;
+
+    @Before
+    public void setUp() throws SQLException {
+        properties = new OnPremProperties();
+        properties.setMaximumPoolSize(2);
+        // only a full batch is sent unless a test shortens the window
+        properties.setLookupWindow(Duration.ofHours(1));
+        table = new OnPremProperties.Table();
+        table.setName("Merry_Device");
+        table.setKey("ID");
+        statement = mock(PreparedStatement.class);
+        connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        dataSource = mock(OnPremDataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+    }
+
+    @After
+    public void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    private PointLookupBatcher batcher() {
+        batcher = new PointLookupBatcher(properties, dataSource);
+        return batcher;
+    }
+
+    /**
+     * Answers the query with the given rows of ID and name.
+     */
+    private void returnRows(Object[]... rows) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] cursor = { -1 };
+        when(rs.next()).thenAnswer(invocation -> ++cursor[0] < rows.length);
+        when(rs.getObject(anyInt()))
+                .thenAnswer(invocation -> rows[cursor[0]][invocation.<Integer>getArgument(0) - 1]);
+        when(statement.executeQuery()).thenReturn(rs);
+    }
+
+    private static Map<String, Object> get(CompletableFuture<Map<String, Object>> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void windowSendsAPartialBatch() throws Exception {
+        properties.setLookupWindow(Duration.ofMillis(20));
+        returnRows(new Object[] { 7L, "pump" });
+
+        Map<String, Object> row = get(batcher().lookup(table, COLUMNS, " 7"));
+
+        assertEquals(7L, row.get("ID"));
+        assertEquals("pump", row.get("name"));
+        verify(connection).prepareStatement("SELECT [ID], [name] FROM [Merry_Device] WHERE [ID] IN (?)");
+    }
+
+    @Test
+    public void fullBatchIsSentBeforeTheWindowCloses() throws Exception {
+        properties.setLookupMaxBatchSize(2);
+        returnRows(new Object[] { 2L, "valve" }, new Object[] { 1L, "pump" });
+        PointLookupBatcher batcher = batcher();
+
+        CompletableFuture<Map<String, Object>> first = batcher.lookup(table, COLUMNS, "1");
+        CompletableFuture<Map<String, Object>> second = batcher.lookup(table, COLUMNS, "2");
+
+        assertEquals("pump", get(first).get("name"));
+        assertEquals("valve", get(second).get("name"));
+    }
+
+    @Test
+    public void inListIsPaddedToAPowerOfTwoWithTheLastKey() throws Exception {
+        properties.setLookupMaxBatchSize(3);
+        returnRows();
+        PointLookupBatcher batcher = batcher();
+
+        batcher.lookup(table, COLUMNS, "1");
+        batcher.lookup(table, COLUMNS, "2");
+        CompletableFuture<Map<String, Object>> last = batcher.lookup(table, COLUMNS, "3");
+
+        assertNull(get(last));
+        verify(connection).prepareStatement("SELECT [ID], [name] FROM [Merry_Device] WHERE [ID] IN (?, ?, ?, ?)");
+        verify(statement).setLong(1, 1L);
+        verify(statement).setLong(2, 2L);
+        verify(statement).setLong(3, 3L);
+        verify(statement).setLong(4, 3L);
+    }
+
+    @Test
+    public void equalKeysShareOneResult() throws Exception {
+        table.setKeyType(OnPremProperties.KeyType.NVARCHAR);
+        properties.setLookupMaxBatchSize(2);
+        // a CHAR key comes back padded and in the stored case
+        returnRows(new Object[] { "AB-1  ", "pump" }, new Object[] { "C-2", "valve" });
+        PointLookupBatcher batcher = batcher();
+
+        CompletableFuture<Map<String, Object>> first = batcher.lookup(table, COLUMNS, "ab-1");
+        CompletableFuture<Map<String, Object>> second = batcher.lookup(table, COLUMNS, "AB-1 ");
+        CompletableFuture<Map<String, Object>> other = batcher.lookup(table, COLUMNS, "c-2");
+
+        assertSame(first, second);
+        assertEquals("pump", get(first).get("name"));
+        assertEquals("valve", get(other).get("name"));
+        verify(statement).setString(1, "ab-1");
+        verify(statement).setString(2, "c-2");
+    }
+
+    @Test
+    public void failedQueryFailsEveryLookupOfTheBatch() throws Exception {
+        properties.setLookupMaxBatchSize(2);
+        SQLException failure = new SQLException("Connection reset");
+        when(statement.executeQuery()).thenThrow(failure);
+        PointLookupBatcher batcher = batcher();
+
+        List<CompletableFuture<Map<String, Object>>> lookups = Arrays.asList(batcher.lookup(table, COLUMNS, "1"),
+                batcher.lookup(table, COLUMNS, "2"));
+
+        for (CompletableFuture<Map<String, Object>> lookup : lookups) {
+            try {
+                get(lookup);
+                fail("Lookup should have failed");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+            assertTrue(lookup.isCompletedExceptionally());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package customer.capjdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.sqlite.SQLiteDataSource;
+
+public class SqliteFileConfigTest {
+
+    /** Drops before creating, like the schema.sql generated by cds deploy. */
+    private static final String SCHEMA = "DROP VIEW IF EXISTS OnPremService_Devices;\n"
+            + "DROP TABLE IF EXISTS my_Devices;\n"
+            + "CREATE TABLE my_Devices (\n  ID INTEGER NOT NULL,\n  name NVARCHAR(100),\n  PRIMARY KEY(ID)\n);\n"
+            + "CREATE VIEW OnPremService_Devices AS SELECT\n  Devices_0.ID,\n  Devices_0.name\nFROM my_Devices AS "
+            + "Devices_0;\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Resource script(String sql) {
+        return new ByteArrayResource(sql.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SQLiteDataSource dataSource() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + folder.getRoot().toPath().resolve("test.db"));
+        return dataSource;
+    }
+
+    private static int count(SQLiteDataSource dataSource, String sql) throws SQLException {
+        try (Connection con = dataSource.getConnection();
+                Statement stmt = con.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void secondStartKeepsTheData() throws Exception {
+        SQLiteDataSource first = dataSource();
+        SqliteFileConfig.initializeSchema(first, script(SCHEMA));
+        try (Connection con = first.getConnection(); Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("INSERT INTO my_Devices (ID, name) VALUES (1, 'pump')");
+        }
+
+        // a new data source on the same file, as after a restart
+        SQLiteDataSource second = dataSource();
+        SqliteFileConfig.initializeSchema(second, script(SCHEMA));
+
+        assertEquals(1, count(second, "SELECT COUNT(*) FROM OnPremService_Devices"));
+    }
+
+    @Test
+    public void newTablesAreNotCreatedInAnExistingFile() throws Exception {
+        SQLiteDataSource dataSource = dataSource();
+        SqliteFileConfig.initializeSchema(dataSource, script(SCHEMA));
+
+        SqliteFileConfig.initializeSchema(dataSource,
+                script(SCHEMA + "CREATE TABLE my_Sensors (\n  ID INTEGER NOT NULL\n);\n"));
+
+        assertEquals(0, count(dataSource, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'my_Sensors'"));
+    }
+
+    @Test
+    public void missingTablesListsTablesAndViewsNotInTheFile() throws Exception {
+        Set<String> existing = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        existing.add("MY_DEVICES");
+        String schema = SCHEMA + "CREATE TABLE IF NOT EXISTS \"my_Sensors\" (ID INTEGER);\n"
+                + "create view OnPremService_Sensors as select * from my_Sensors;\n";
+
+        assertEquals(Arrays.asList("OnPremService_Devices", "my_Sensors", "OnPremService_Sensors"),
+                SqliteFileConfig.missingTables(script(schema), existing));
+        existing.addAll(Arrays.asList("OnPremService_Devices", "my_Sensors", "OnPremService_Sensors"));
+        assertEquals(Collections.emptyList(), SqliteFileConfig.missingTables(script(schema), existing));
+    }
+}